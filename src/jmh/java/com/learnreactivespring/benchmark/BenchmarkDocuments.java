@@ -0,0 +1,55 @@
+package com.learnreactivespring.benchmark;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemCapped;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Items and ItemCapped documents like the stored ones, with descriptions of a given length
+ */
+final class BenchmarkDocuments {
+
+    private static final String WORDS = "Samsung TV 4K Ultra HD LG Apple Watch Beats HeadPhones Bose Speaker ";
+
+    private BenchmarkDocuments() {
+    }
+
+    static Class<?> type(String documentType) {
+        switch (documentType) {
+            case "Item":
+                return Item.class;
+            case "ItemCapped":
+                return ItemCapped.class;
+            default:
+                throw new IllegalArgumentException("Unknown document type " + documentType);
+        }
+    }
+
+    static Object document(String documentType, int descriptionLength, int index) {
+        String id = new ObjectId().toHexString();
+        String description = description(descriptionLength, index);
+        double price = 100.00 + index * 0.99;
+        return type(documentType) == Item.class ? new Item(id, description, price, 1L) : new ItemCapped(id, description, price);
+    }
+
+    static List<Object> documents(String documentType, int descriptionLength, int count) {
+        List<Object> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(document(documentType, descriptionLength, i));
+        }
+        return documents;
+    }
+
+    private static String description(int length, int index) {
+        StringBuilder description = new StringBuilder(length);
+        while (description.length() < length) {
+            description.append(WORDS);
+        }
+        description.setLength(length);
+        description.replace(0, Math.min(length, Integer.toString(index).length()), Integer.toString(index));
+        return description.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.learnreactivespring.benchmark;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnreactivespring.codec.CodecConfig;
+import com.learnreactivespring.codec.ItemJacksonModule;
+import com.learnreactivespring.codec.Jackson2CborFluxDecoder;
+import com.learnreactivespring.codec.Jackson2CborFluxEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.AbstractJackson2Decoder;
+import org.springframework.http.codec.json.AbstractJackson2Encoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item and ItemCapped through the WebFlux Jackson codecs, the way the endpoints write and read them:
+ * one document (Mono), a Flux as an array (application/json) and a Flux as a stream (stream+json, one document
+ * per line). The same for the binary formats smile (x-jackson-smile and stream+x-jackson-smile) and
+ * cbor (cbor and cbor-seq). There is no cbor-seq decoder, decodeFluxStream reads the cbor array instead.
+ * The payloads are encoded once in setUp, the decode benchmarks wrap the bytes in a new buffer per invocation.
+ * serializers compares the reflective bean (de)serializers with the hand written ones of ItemJacksonModule,
+ * run with -prof gc for the allocation rate (gc.alloc.rate.norm, bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonCodecBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"Item", "ItemCapped"})
+    String documentType;
+
+    @Param({"32", "512", "4096"})
+    int descriptionLength;
+
+    @Param({"100"})
+    int fluxSize;
+
+    @Param({"reflective", "handwritten"})
+    String serializers;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private AbstractJackson2Encoder encoder;
+
+    private AbstractJackson2Decoder decoder;
+
+    private MediaType mediaType;
+
+    private MediaType streamMediaType;
+
+    private ResolvableType type;
+
+    private Object document;
+
+    private List<Object> documents;
+
+    private byte[] value;
+
+    private byte[] array;
+
+    private byte[] stream;
+
+    @Setup
+    public void setUp() {
+        Module[] modules = "handwritten".equals(serializers) ? new Module[]{new ItemJacksonModule()} : new Module[0];
+        switch (format) {
+            case "smile":
+                ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().modulesToInstall(modules).build();
+                encoder = new Jackson2SmileEncoder(smileMapper);
+                decoder = new Jackson2SmileDecoder(smileMapper);
+                mediaType = CodecConfig.APPLICATION_SMILE;
+                streamMediaType = CodecConfig.APPLICATION_STREAM_SMILE;
+                break;
+            case "cbor":
+                ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().modulesToInstall(modules).build();
+                encoder = new Jackson2CborFluxEncoder(cborMapper);
+                decoder = new Jackson2CborFluxDecoder(cborMapper);
+                mediaType = CodecConfig.APPLICATION_CBOR;
+                streamMediaType = CodecConfig.APPLICATION_CBOR_SEQ;
+                break;
+            default:
+                ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(modules).build();
+                encoder = new Jackson2JsonEncoder(objectMapper);
+                decoder = new Jackson2JsonDecoder(objectMapper);
+                mediaType = MediaType.APPLICATION_JSON;
+                streamMediaType = MediaType.APPLICATION_STREAM_JSON;
+        }
+        type = ResolvableType.forClass(BenchmarkDocuments.type(documentType));
+        document = BenchmarkDocuments.document(documentType, descriptionLength, 0);
+        documents = BenchmarkDocuments.documents(documentType, descriptionLength, fluxSize);
+        value = bytes(Flux.just(encode()));
+        array = bytes(Flux.fromIterable(encodeFlux()));
+        stream = "cbor".equals(format) ? array : bytes(Flux.fromIterable(encodeFluxStream()));
+    }
+
+    @Benchmark
+    public DataBuffer encode() {
+        return encoder.encodeValue(document, bufferFactory, type, mediaType, null);
+    }
+
+    @Benchmark
+    public List<DataBuffer> encodeFlux() {
+        return encoder.encode(Flux.fromIterable(documents), bufferFactory, type, mediaType, null)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<DataBuffer> encodeFluxStream() {
+        return encoder.encode(Flux.fromIterable(documents), bufferFactory, type, streamMediaType, null)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public Object decode() {
+        return decoder.decode(bufferFactory.wrap(value), type, mediaType, null);
+    }
+
+    @Benchmark
+    public List<Object> decodeFlux() {
+        return decoder.decode(Flux.just(bufferFactory.wrap(array)), type, mediaType, null)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Object> decodeFluxStream() {
+        return decoder.decode(Flux.just(bufferFactory.wrap(stream)), type, "cbor".equals(format) ? mediaType : streamMediaType, null)
+                .collectList()
+                .block();
+    }
+
+    private byte[] bytes(Flux<DataBuffer> buffers) {
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        return bytes;
+    }
+}
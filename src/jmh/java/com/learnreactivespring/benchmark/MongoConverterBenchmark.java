@@ -0,0 +1,108 @@
+package com.learnreactivespring.benchmark;
+
+import com.learnreactivespring.convert.ItemMappingMongoConverter;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Item and ItemCapped through the Spring Data mapping converter, between the entity and the bson Document the
+ * driver reads and writes. A single document and a Flux of documents like a find or a tailable cursor returns.
+ * mapping compares the property mapping of MappingMongoConverter with the hand written ItemMappingMongoConverter,
+ * run with -prof gc for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoConverterBenchmark {
+
+    @Param({"Item", "ItemCapped"})
+    String documentType;
+
+    @Param({"32", "512", "4096"})
+    int descriptionLength;
+
+    @Param({"100"})
+    int fluxSize;
+
+    @Param({"property", "handwritten"})
+    String mapping;
+
+    private MappingMongoConverter converter;
+
+    private Class<?> type;
+
+    private Object entity;
+
+    private List<Object> entities;
+
+    private Document bson;
+
+    private List<Document> bsons;
+
+    @Setup
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        converter = "handwritten".equals(mapping) ? new ItemMappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext)
+                : new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        type = BenchmarkDocuments.type(documentType);
+        entity = BenchmarkDocuments.document(documentType, descriptionLength, 0);
+        entities = BenchmarkDocuments.documents(documentType, descriptionLength, fluxSize);
+        bson = write();
+        bsons = entities.stream().map(this::write).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Document write() {
+        return write(entity);
+    }
+
+    @Benchmark
+    public Object read() {
+        return converter.read(type, bson);
+    }
+
+    @Benchmark
+    public List<Document> writeFlux() {
+        return Flux.fromIterable(entities)
+                .map(this::write)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Object> readFlux() {
+        return Flux.fromIterable(bsons)
+                .<Object>map(document -> converter.read(type, document))
+                .collectList()
+                .block();
+    }
+
+    private Document write(Object entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return document;
+    }
+}
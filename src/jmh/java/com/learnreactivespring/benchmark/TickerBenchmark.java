@@ -0,0 +1,95 @@
+package com.learnreactivespring.benchmark;
+
+import com.learnreactivespring.stream.SlowConsumerPolicy;
+import com.learnreactivespring.stream.StreamBackpressure;
+import com.learnreactivespring.stream.Ticker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * /fluxstream-infinite with many connected clients, shared ticker (one interval for all) against one interval per
+ * subscriber. Every subscriber goes through StreamBackpressure with the latest policy, like the endpoint.
+ * The ticker runs on a VirtualTimeScheduler, so a benchmark measures the work of the ticks and not the wait for them:
+ * tick is one period for all the subscribers (the timer tasks that are due and the delivery of the ticks),
+ * connectDisconnect is a client that connects and leaves while the others stay.
+ * Run with -prof gc, the allocation per tick grows with the timer tasks in per subscriber mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickerBenchmark {
+
+    static final Duration PERIOD = Duration.ofSeconds(1);
+
+    @Param({"1000", "10000", "100000"})
+    int subscribers;
+
+    @Param({"true", "false"})
+    boolean shared;
+
+    private VirtualTimeScheduler scheduler;
+
+    private Ticker ticker;
+
+    private StreamBackpressure streamBackpressure;
+
+    private List<Disposable> connections;
+
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        scheduler = VirtualTimeScheduler.create();
+        ticker = new Ticker(PERIOD, shared, scheduler);
+        streamBackpressure = new StreamBackpressure(256);
+        connections = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            connections.add(connect().subscribe(blackhole::consume));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connections.forEach(Disposable::dispose);
+        scheduler.dispose();
+    }
+
+    private Flux<Long> connect() {
+        return streamBackpressure.apply(ticker.ticks(), SlowConsumerPolicy.LATEST, Function.identity());
+    }
+
+    @Benchmark
+    public void tick() {
+        scheduler.advanceTimeBy(PERIOD);
+    }
+
+    @Benchmark
+    public void connectDisconnect() {
+        connect().subscribe(blackhole::consume).dispose();
+    }
+}
@@ -0,0 +1,84 @@
+package com.learnreactivespring.benchmark;
+
+import com.learnreactivespring.scheduler.HashedWheelScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule and cancel of one delay, the way Mono.delay and delayElements use the scheduler, while pending delays are
+ * already waiting. timer is the default Reactor scheduler (a ScheduledThreadPoolExecutor per worker, a heap under
+ * a lock) or the HashedWheelScheduler. The pending delays never expire during the run, like connection timeouts
+ * that are cancelled when the response comes.
+ * scheduleAndCancelConcurrently is the same from 4 threads, they contend on the heap locks of the executors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerSchedulerBenchmark {
+
+    static final Runnable NOOP = () -> { };
+
+    @Param({"0", "100000", "500000"})
+    int pending;
+
+    @Param({"parallel", "hashed-wheel"})
+    String timer;
+
+    private Scheduler dispatcher;
+
+    private Scheduler scheduler;
+
+    private List<Disposable> pendingDelays;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dispatcher = Schedulers.newParallel("benchmark");
+        scheduler = "hashed-wheel".equals(timer) ? new HashedWheelScheduler(Duration.ofMillis(10), 512, dispatcher)
+                : dispatcher;
+        pendingDelays = new ArrayList<>(pending);
+        for (int i = 0; i < pending; i++) {
+            pendingDelays.add(scheduler.schedule(NOOP, 1, TimeUnit.HOURS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pendingDelays.forEach(Disposable::dispose);
+        scheduler.dispose();
+        dispatcher.dispose();
+    }
+
+    @Benchmark
+    public void scheduleAndCancel() {
+        scheduler.schedule(NOOP, 1, TimeUnit.HOURS).dispose();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void scheduleAndCancelConcurrently() {
+        scheduler.schedule(NOOP, 1, TimeUnit.HOURS).dispose();
+    }
+}
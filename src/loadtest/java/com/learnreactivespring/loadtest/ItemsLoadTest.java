@@ -0,0 +1,283 @@
+package com.learnreactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnreactivespring.LearnReactivespringApplication;
+import com.learnreactivespring.codec.CodecConfig;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.BulkBatchResult;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static com.learnreactivespring.constants.ItemConstants.ITEM_END_POINT_V1;
+import static com.learnreactivespring.constants.ItemConstants.ITEM_FUNCTIONAL_END_POINT_V1;
+
+/**
+ * Load generator for the annotated (/v1/items) and the functional (/v1/fun/items) item routes.
+ * Without loadtest.base-url it starts the application with the test profile (embedded Mongo) on a random port.
+ * Each stack is driven on its own, one after the other, with the same seed data, the same number of concurrent
+ * connections and the same read/write mix. The report has the throughput and the p50/p99/p999 latency of every route.
+ *
+ * mvn -Ploadtest verify -DskipTests -Dloadtest.concurrency=128 -Dloadtest.write-ratio=0.2 -Dloadtest.duration=60
+ *
+ * Settings (system properties):
+ * loadtest.base-url - application to test, default is an embedded one
+ * loadtest.concurrency - concurrent connections (requests in flight), default 64
+ * loadtest.write-ratio - share of the requests that write, default 0.2
+ * loadtest.warmup, loadtest.duration - seconds per stack, not recorded and recorded, default 10 and 30
+ * loadtest.seed-items - items stored before every stack, default 1000
+ * loadtest.report - csv file of the results, default target/loadtest-report.csv
+ */
+public class ItemsLoadTest {
+
+    private static final int BATCH_ITEMS = 20;      //items per bulk and ingest request
+
+    private final WebClient webClient;
+
+    private final int concurrency;
+
+    private final double writeRatio;
+
+    private final Duration warmup;
+
+    private final Duration duration;
+
+    private final int seedItems;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Items created during the run, the deletes take their ids from here so the seeded items are never deleted
+     */
+    private final Queue<String> created = new ConcurrentLinkedQueue<>();
+
+    private List<String> seeded = new ArrayList<>();
+
+    ItemsLoadTest(String baseUrl, int concurrency, double writeRatio, Duration warmup, Duration duration, int seedItems) {
+        HttpClient httpClient = HttpClient.create(ConnectionProvider.fixed("loadtest", concurrency));
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(baseUrl)
+                .build();
+        this.concurrency = concurrency;
+        this.writeRatio = writeRatio;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.seedItems = seedItems;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String baseUrl = System.getProperty("loadtest.base-url");
+        ConfigurableApplicationContext context = null;
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            context = new SpringApplicationBuilder(LearnReactivespringApplication.class)
+                    .profiles("test")
+                    .properties("server.port=0", "logging.level.root=WARN")
+                    .run(args);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+        ItemsLoadTest loadTest = new ItemsLoadTest(baseUrl,
+                Integer.getInteger("loadtest.concurrency", 64),
+                Double.parseDouble(System.getProperty("loadtest.write-ratio", "0.2")),
+                Duration.ofSeconds(Integer.getInteger("loadtest.warmup", 10)),
+                Duration.ofSeconds(Integer.getInteger("loadtest.duration", 30)),
+                Integer.getInteger("loadtest.seed-items", 1000));
+
+        Map<String, Map<LoadRoute, RouteStats>> results = new LinkedHashMap<>();
+        for (String stack : new String[]{ITEM_END_POINT_V1, ITEM_FUNCTIONAL_END_POINT_V1}) {
+            if (context != null) {
+                context.getBean(ItemReactiveRepository.class).deleteAll().block();     //same data for both stacks
+            }
+            results.put(stack, loadTest.run(stack));
+        }
+        loadTest.report(results, Paths.get(System.getProperty("loadtest.report", "target/loadtest-report.csv")));
+
+        if (context != null) {
+            context.close();
+        }
+        System.exit(0);
+    }
+
+    Map<LoadRoute, RouteStats> run(String stack) {
+        created.clear();
+        seeded = seed(stack);
+        Map<LoadRoute, RouteStats> stats = new EnumMap<>(LoadRoute.class);
+        for (LoadRoute route : LoadRoute.values()) {
+            stats.put(route, new RouteStats());
+        }
+        long recordFrom = System.nanoTime() + warmup.toNanos();
+        long deadline = recordFrom + duration.toNanos();
+        System.out.printf("%s: %d connections, %.0f%% writes, %ds warmup and %ds recorded%n", stack, concurrency,
+                writeRatio * 100, warmup.getSeconds(), duration.getSeconds());
+
+        Flux.range(0, concurrency)
+                .flatMap(connection -> Mono.defer(() -> request(stack, stats, recordFrom))
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+        return stats;
+    }
+
+    private List<String> seed(String stack) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < seedItems; i++) {
+            items.add(newItem(i));
+        }
+        return webClient.post()
+                .uri(stack + "/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(items)
+                .retrieve()
+                .bodyToFlux(BulkBatchResult.class)
+                .flatMapIterable(BulkBatchResult::getIds)
+                .collectList()
+                .block();
+    }
+
+    /**
+     * One request of a random route, its latency is recorded if it started after the warmup
+     */
+    private Mono<Void> request(String stack, Map<LoadRoute, RouteStats> stats, long recordFrom) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadRoute route = LoadRoute.pick(random.nextDouble() < writeRatio, random.nextDouble());
+        String deleteId = route == LoadRoute.DELETE ? created.poll() : null;
+        if (route == LoadRoute.DELETE && deleteId == null) {
+            route = LoadRoute.CREATE;       //nothing to delete yet
+        }
+        LoadRoute selected = route;
+        long start = System.nanoTime();
+        return exchange(stack, selected, deleteId)
+                .flatMap(response -> consume(selected, response))
+                .map(ok -> !ok)
+                .onErrorReturn(true)
+                .doOnNext(error -> {
+                    if (start >= recordFrom) {
+                        stats.get(selected).record(System.nanoTime() - start, error);
+                    }
+                })
+                .then();
+    }
+
+    private Mono<ClientResponse> exchange(String stack, LoadRoute route, String deleteId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String seededId = seeded.get(random.nextInt(seeded.size()));
+        switch (route) {
+            case GET_ALL:
+            case GET_PAGE:
+                return webClient.get().uri(stack + route.path()).exchange();
+            case GET_ONE:
+                return webClient.get().uri(stack + "/{id}", seededId).exchange();
+            case CREATE:
+                return webClient.post().uri(stack)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(newItem(random.nextInt(100_000)))
+                        .exchange();
+            case UPDATE:
+                return webClient.method(HttpMethod.PUT).uri(stack + "/{id}", seededId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(new Item(null, null, 100.00 + random.nextInt(1000)))
+                        .exchange();
+            case DELETE:
+                return webClient.delete().uri(stack + "/{id}", deleteId).exchange();
+            case BULK:
+                return webClient.post().uri(stack + "/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(newItems())
+                        .exchange();
+            default:
+                return webClient.post().uri(stack + "/ingest")
+                        .contentType(CodecConfig.APPLICATION_NDJSON)
+                        .bodyValue(newItems().stream().map(this::json).collect(Collectors.joining("\n")))
+                        .exchange();
+        }
+    }
+
+    /**
+     * Reads the whole body, the created ids are kept for the deletes
+     * @return true for a 2xx response
+     */
+    private Mono<Boolean> consume(LoadRoute route, ClientResponse response) {
+        boolean ok = response.statusCode().is2xxSuccessful();
+        if (route == LoadRoute.CREATE && ok) {
+            return response.bodyToMono(Item.class)
+                    .doOnNext(item -> created.add(item.getId()))
+                    .thenReturn(true);
+        }
+        return response.releaseBody().thenReturn(ok);
+    }
+
+    private static Item newItem(int index) {
+        return new Item(null, "Load test item " + index, 100.00 + index % 1000);
+    }
+
+    private static List<Item> newItems() {
+        List<Item> items = new ArrayList<>(BATCH_ITEMS);
+        for (int i = 0; i < BATCH_ITEMS; i++) {
+            items.add(newItem(ThreadLocalRandom.current().nextInt(100_000)));
+        }
+        return items;
+    }
+
+    private String json(Item item) {
+        try {
+            return objectMapper.writeValueAsString(item);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void report(Map<String, Map<LoadRoute, RouteStats>> results, Path csv) throws IOException {
+        double seconds = duration.toMillis() / 1000.0;
+        String header = String.format("%-14s %-16s %9s %9s %7s %9s %9s %9s %9s",
+                "stack", "route", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        System.out.println(header);
+        if (csv.getParent() != null) {
+            Files.createDirectories(csv.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv))) {
+            writer.println("stack,route,requests,requests_per_second,errors,p50_ms,p99_ms,p999_ms,max_ms");
+            for (Map.Entry<String, Map<LoadRoute, RouteStats>> stack : results.entrySet()) {
+                long total = 0;
+                for (Map.Entry<LoadRoute, RouteStats> route : stack.getValue().entrySet()) {
+                    RouteStats stats = route.getValue();
+                    total += stats.count();
+                    System.out.println(String.format("%-14s %-16s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f",
+                            stack.getKey(), route.getKey().label(), stats.count(), stats.count() / seconds, stats.errors(),
+                            stats.percentileMillis(50), stats.percentileMillis(99), stats.percentileMillis(99.9),
+                            stats.maxMillis()));
+                    writer.printf("%s,%s,%d,%.1f,%d,%.2f,%.2f,%.2f,%.2f%n",
+                            stack.getKey(), route.getKey().label(), stats.count(), stats.count() / seconds, stats.errors(),
+                            stats.percentileMillis(50), stats.percentileMillis(99), stats.percentileMillis(99.9),
+                            stats.maxMillis());
+                }
+                System.out.println(String.format("%-14s %-16s %9d %9.1f", stack.getKey(), "total", total, total / seconds));
+            }
+        }
+        System.out.println("Report written to " + csv.toAbsolutePath());
+    }
+}
@@ -0,0 +1,64 @@
+package com.learnreactivespring.loadtest;
+
+/**
+ * The item routes the load test drives, the same on both stacks (/v1/items and /v1/fun/items).
+ * The weight is the share of a route within the reads or within the writes.
+ * The /runtimeException demo route and the cache statistics are left out.
+ */
+enum LoadRoute {
+
+    GET_ALL("GET", "", false, 1),
+    GET_PAGE("GET", "?limit=50", false, 3),
+    GET_ONE("GET", "/{id}", false, 6),
+    CREATE("POST", "", true, 8),
+    UPDATE("PUT", "/{id}", true, 8),
+    DELETE("DELETE", "/{id}", true, 2),
+    BULK("POST", "/bulk", true, 1),
+    INGEST("POST", "/ingest", true, 1);
+
+    private final String method;
+    private final String path;
+    private final boolean write;
+    private final int weight;
+
+    LoadRoute(String method, String path, boolean write, int weight) {
+        this.method = method;
+        this.path = path;
+        this.write = write;
+        this.weight = weight;
+    }
+
+    String path() {
+        return path;
+    }
+
+    String label() {
+        return method + " " + path;
+    }
+
+    boolean isWrite() {
+        return write;
+    }
+
+    /**
+     * @param write - pick among the writes or among the reads
+     * @param random - uniform in [0, 1)
+     */
+    static LoadRoute pick(boolean write, double random) {
+        int total = 0;
+        for (LoadRoute route : values()) {
+            total += route.write == write ? route.weight : 0;
+        }
+        double point = random * total;
+        for (LoadRoute route : values()) {
+            if (route.write != write) {
+                continue;
+            }
+            point -= route.weight;
+            if (point < 0) {
+                return route;
+            }
+        }
+        return write ? CREATE : GET_ONE;
+    }
+}
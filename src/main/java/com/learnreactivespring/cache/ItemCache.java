@@ -0,0 +1,145 @@
+package com.learnreactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.CacheStatistics;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-through cache in front of ItemReactiveRepository.findById, shared by the annotated and the functional stack.
+ * Entries expire after items.cache.ttl and the least used ones are evicted above items.cache.max-size.
+ * Unknown ids are cached too (as an empty Optional) for the shorter items.cache.negative-ttl,
+ * so repeated lookups of a missing item do not reach Mongo either.
+ * Concurrent misses for the same id share one findById (SingleFlight), a hot id is read from Mongo once
+ * no matter how many requests ask for it while it is not cached.
+ * Every write path has to call put or invalidate. A read that races with a write can still put the old
+ * document back, it is then served at most until it expires.
+ */
+@Component
+public class ItemCache {
+
+    private final ItemReactiveRepository itemReactiveRepository;
+
+    private final Cache<String, Optional<Item>> cache;
+
+    private final SingleFlight<String, Optional<Item>> findByIdFlight = new SingleFlight<>();
+
+    public ItemCache(ItemReactiveRepository itemReactiveRepository,
+                     @Value("${items.cache.max-size:10000}") long maxSize,
+                     @Value("${items.cache.ttl:30s}") Duration ttl,
+                     @Value("${items.cache.negative-ttl:2s}") Duration negativeTtl) {
+        this.itemReactiveRepository = itemReactiveRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<Item>>() {
+                    @Override
+                    public long expireAfterCreate(String id, Optional<Item> item, long currentTime) {
+                        return (item.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String id, Optional<Item> item, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, item, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String id, Optional<Item> item, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * The returned item is shared with other readers, do not modify it.
+     * @return the cached item, or the item read from Mongo on a miss. Empty if there is no such item
+     */
+    public Mono<Item> findById(String id) {
+        return Mono.defer(() -> {
+            Optional<Item> cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Mono.justOrEmpty(cached);
+            }
+            return findByIdFlight.execute(id, () -> itemReactiveRepository.findById(id)
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .doOnNext(item -> cache.put(id, item)))
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    /**
+     * The ids that are not cached are read from Mongo with one findAllById ($in) query.
+     * The returned items are shared with other readers, do not modify them.
+     * @return the items by id, the unknown ids are left out
+     */
+    public Mono<Map<String, Item>> findAllById(Collection<String> ids) {
+        return Mono.defer(() -> {
+            Map<String, Optional<Item>> cached = cache.getAllPresent(ids);
+            Map<String, Item> items = new HashMap<>();
+            cached.forEach((id, item) -> item.ifPresent(found -> items.put(id, found)));
+            Set<String> missing = new HashSet<>(ids);
+            missing.removeAll(cached.keySet());
+            if (missing.isEmpty()) {
+                return Mono.just(items);
+            }
+            return itemReactiveRepository.findAllById(missing)
+                    .doOnNext(item -> {
+                        cache.put(item.getId(), Optional.of(item));
+                        items.put(item.getId(), item);
+                        missing.remove(item.getId());
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        missing.forEach(id -> cache.put(id, Optional.empty()));
+                        return items;
+                    }));
+        });
+    }
+
+    /**
+     * Refresh the entry after the item was created or updated
+     */
+    public void put(Item item) {
+        cache.put(item.getId(), Optional.of(item));
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll(Iterable<String> ids) {
+        cache.invalidateAll(ids);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Misses that joined a findById of the same id already in flight instead of reading Mongo again
+     */
+    public long coalesced() {
+        return findByIdFlight.coalesced();
+    }
+
+    public CacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), cache.estimatedSize(), findByIdFlight.coalesced());
+    }
+}
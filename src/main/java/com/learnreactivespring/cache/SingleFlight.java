@@ -0,0 +1,67 @@
+package com.learnreactivespring.cache;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing, concurrent calls for the same key share one in-flight call.
+ * The first caller starts the call and the callers that come while it runs get the same (cached) result.
+ * The call is forgotten as soon as it completes, so the next caller starts a new one.
+ * A caller that cancels does not cancel the shared call, the other callers still wait for it.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param call - started only if there is no call in flight for this key
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            Mono<V> running = inFlight.get(key);
+            if (running != null) {
+                coalesced.incrementAndGet();
+                return running;
+            }
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            Mono<V> shared = Mono.defer(call)
+                    .doFinally(signal -> inFlight.remove(key, self.get()))
+                    .cache();
+            self.set(shared);
+            running = inFlight.putIfAbsent(key, shared);
+            if (running != null) {      //another caller was faster
+                coalesced.incrementAndGet();
+                return running;
+            }
+            calls.incrementAndGet();
+            return shared;
+        });
+    }
+
+    /**
+     * Calls that were started
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    /**
+     * Calls that joined a call in flight instead of starting one
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,118 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Extra codecs on top of the WebFlux defaults.
+ * Smile (application/x-jackson-smile) is registered by WebFlux itself, because jackson-dataformat-smile is on
+ * the classpath, but with a plain ObjectMapper. It is registered once more here with the Spring Boot ObjectMapper
+ * settings, like CBOR, so all the formats use the ItemJacksonModule.
+ */
+@Configuration
+public class CodecConfig {
+
+    /**
+     * Newline delimited json, one json document per line. Not part of MediaType in this Spring version.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+    public static final String APPLICATION_CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+    public static final MediaType APPLICATION_CBOR = MediaType.APPLICATION_CBOR;
+
+    /**
+     * CBOR data items one after the other (RFC 8742), the CBOR counterpart of application/stream+json
+     */
+    public static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+    public static final MediaType APPLICATION_CBOR_SEQ = MediaType.valueOf(APPLICATION_CBOR_SEQ_VALUE);
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+    public static final MediaType APPLICATION_STREAM_SMILE = MediaType.valueOf(APPLICATION_STREAM_SMILE_VALUE);
+
+    /**
+     * Media types of the item endpoints, the first one is the default
+     */
+    public static final List<MediaType> ITEM_MEDIA_TYPES = Arrays.asList(
+            MediaType.APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE);
+
+    /**
+     * Media types of the streaming endpoints, the first one is the default
+     */
+    public static final List<MediaType> ITEM_STREAM_MEDIA_TYPES = Arrays.asList(
+            MediaType.APPLICATION_STREAM_JSON, APPLICATION_STREAM_SMILE, APPLICATION_CBOR_SEQ);
+
+    /**
+     * Hand written (de)serializers of Item and ItemCapped, Spring Boot adds every Module bean to its ObjectMapper
+     */
+    @Bean
+    public Module itemJacksonModule() {
+        return new ItemJacksonModule();
+    }
+
+    /**
+     * The default Jackson decoder only reads application/json and application/*+json (eg application/stream+json).
+     * Register one more for application/x-ndjson. Decoding to a Flux reads one document per line
+     * and only as fast as the subscriber requests them.
+     */
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> configurer.customCodecs()
+                .decoder(new Jackson2JsonDecoder(objectMapper, APPLICATION_NDJSON));
+    }
+
+    /**
+     * application/cbor, application/cbor-seq and smile, with the same Jackson settings as json.
+     * Custom writers come before the default ones, so the json encoder is registered first once more:
+     * without an Accept header (or when any media type is accepted) the response stays json.
+     */
+    @Bean
+    public CodecCustomizer binaryCodecCustomizer(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        return configurer -> {
+            configurer.customCodecs().encoder(new Jackson2JsonEncoder(objectMapper));
+            configurer.customCodecs().encoder(new Jackson2CborFluxEncoder(cborMapper));
+            configurer.customCodecs().decoder(new Jackson2CborFluxDecoder(cborMapper));
+            configurer.customCodecs().encoder(new Jackson2SmileEncoder(smileMapper));
+            configurer.customCodecs().decoder(new Jackson2SmileDecoder(smileMapper));
+        };
+    }
+
+    /**
+     * Content negotiation of the functional endpoints, the router functions do not pick the response media type
+     * from the Accept header on their own.
+     * @param accept - the accepted media types of the request
+     * @param supported - the media types of the endpoint, the first one is the default
+     */
+    public static MediaType negotiate(List<MediaType> accept, List<MediaType> supported) {
+        List<MediaType> acceptable = new ArrayList<>(accept);
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType mediaType : acceptable) {
+            for (MediaType candidate : supported) {
+                if (mediaType.isCompatibleWith(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return supported.get(0);
+    }
+}
@@ -0,0 +1,211 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemCapped;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Hand written Jackson serializers and deserializers of Item and ItemCapped, they are written and read field by
+ * field with the streaming JsonGenerator/JsonParser instead of the reflective bean (de)serializers.
+ * The generator and the parser are format agnostic, the same code writes json, smile and cbor.
+ * Item leaves out the null fields (like @JsonInclude(NON_NULL) on Item), ItemCapped writes them.
+ * Unknown fields are skipped, like FAIL_ON_UNKNOWN_PROPERTIES is off in Spring Boot.
+ * lastModified is an ISO-8601 string, like the JavaTimeModule writes an Instant with WRITE_DATES_AS_TIMESTAMPS off.
+ */
+public class ItemJacksonModule extends SimpleModule {
+
+    public ItemJacksonModule() {
+        super("ItemJacksonModule");
+        addSerializer(Item.class, new ItemSerializer());
+        addDeserializer(Item.class, new ItemDeserializer());
+        addSerializer(ItemCapped.class, new ItemCappedSerializer());
+        addDeserializer(ItemCapped.class, new ItemCappedDeserializer());
+    }
+
+    static class ItemSerializer extends JsonSerializer<Item> {
+
+        @Override
+        public void serialize(Item item, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(item);
+            if (item.getId() != null) {
+                generator.writeStringField("id", item.getId());
+            }
+            if (item.getDescription() != null) {
+                generator.writeStringField("description", item.getDescription());
+            }
+            if (item.getPrice() != null) {
+                generator.writeNumberField("price", item.getPrice().doubleValue());
+            }
+            if (item.getVersion() != null) {
+                generator.writeNumberField("version", item.getVersion().longValue());
+            }
+            if (item.getLastModified() != null) {
+                generator.writeStringField("lastModified", item.getLastModified().toString());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    static class ItemCappedSerializer extends JsonSerializer<ItemCapped> {
+
+        @Override
+        public void serialize(ItemCapped item, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(item);
+            generator.writeStringField("id", item.getId());
+            generator.writeStringField("description", item.getDescription());
+            if (item.getPrice() == null) {
+                generator.writeNullField("price");
+            } else {
+                generator.writeNumberField("price", item.getPrice().doubleValue());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    static class ItemDeserializer extends JsonDeserializer<Item> {
+
+        @Override
+        public Item deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            expectStartObject(parser, context, Item.class);
+            Item item = new Item();
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        item.setId(readString(parser, context, value));
+                        break;
+                    case "description":
+                        item.setDescription(readString(parser, context, value));
+                        break;
+                    case "price":
+                        item.setPrice(readDouble(parser, context, value, Item.class));
+                        break;
+                    case "version":
+                        item.setVersion(readVersion(parser, context, value));
+                        break;
+                    case "lastModified":
+                        item.setLastModified(readInstant(parser, context, value));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return item;
+        }
+    }
+
+    static class ItemCappedDeserializer extends JsonDeserializer<ItemCapped> {
+
+        @Override
+        public ItemCapped deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            expectStartObject(parser, context, ItemCapped.class);
+            ItemCapped item = new ItemCapped();
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        item.setId(readString(parser, context, value));
+                        break;
+                    case "description":
+                        item.setDescription(readString(parser, context, value));
+                        break;
+                    case "price":
+                        item.setPrice(readDouble(parser, context, value, ItemCapped.class));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return item;
+        }
+    }
+
+    /**
+     * Moves past the START_OBJECT, the parser is then on the first field name (or END_OBJECT)
+     */
+    private static void expectStartObject(JsonParser parser, DeserializationContext context, Class<?> type) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            context.handleUnexpectedToken(type, parser);
+        }
+    }
+
+    /**
+     * A scalar, a number or a boolean is read as its text like the reflective deserializer does.
+     * An object or an array fails (400), instead of leaving the parser inside of it.
+     */
+    private static String readString(JsonParser parser, DeserializationContext context, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue() || value == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            return (String) context.handleUnexpectedToken(String.class, parser);
+        }
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Only an integer or null, the version is compared by the If-Match write (getValueAsLong would read "abc" as 0)
+     */
+    private static Long readVersion(JsonParser parser, DeserializationContext context, JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            default:
+                return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+    }
+
+    /**
+     * An ISO-8601 string or epoch milliseconds
+     */
+    private static Instant readInstant(JsonParser parser, DeserializationContext context, JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return Instant.ofEpochMilli(parser.getLongValue());
+            case VALUE_STRING:
+                try {
+                    return Instant.parse(parser.getText().trim());
+                } catch (DateTimeParseException ex) {
+                    throw context.weirdStringException(parser.getText(), Instant.class, "not an ISO-8601 instant");
+                }
+            default:
+                return (Instant) context.handleUnexpectedToken(Instant.class, parser);
+        }
+    }
+
+    /**
+     * A number, null or a number in a string, like the reflective deserializer accepts
+     */
+    private static Double readDouble(JsonParser parser, DeserializationContext context, JsonToken value, Class<?> type) throws IOException {
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_FLOAT:
+            case VALUE_NUMBER_INT:
+                return parser.getDoubleValue();
+            case VALUE_STRING:
+                try {
+                    return Double.valueOf(parser.getText().trim());
+                } catch (NumberFormatException ex) {
+                    throw context.weirdStringException(parser.getText(), Double.class, "not a valid price");
+                }
+            default:
+                return (Double) context.handleUnexpectedToken(Double.class, parser);
+        }
+    }
+}
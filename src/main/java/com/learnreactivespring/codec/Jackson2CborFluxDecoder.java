@@ -0,0 +1,32 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CBOR decoder of this Spring version decodes only single values (Mono).
+ * A Flux is read from a CBOR array, of definite or indefinite length. Jackson has no non blocking CBOR parser, so the whole body is read first.
+ */
+public class Jackson2CborFluxDecoder extends Jackson2CborDecoder {
+
+    public Jackson2CborFluxDecoder(ObjectMapper objectMapper) {
+        super(objectMapper, CodecConfig.APPLICATION_CBOR);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Flux<Object> decode(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType,
+                               Map<String, Object> hints) {
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return decodeToMono(input, listType, mimeType, hints)
+                .flatMapIterable(values -> (List<Object>) values);
+    }
+}
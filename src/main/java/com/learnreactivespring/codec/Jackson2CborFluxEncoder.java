@@ -0,0 +1,51 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The CBOR encoder of this Spring version encodes only single values (Mono).
+ * A Flux is written as one CBOR array (application/cbor), like the json encoder writes a json array,
+ * or element by element as a CBOR sequence (application/cbor-seq, RFC 8742) for the stream endpoints.
+ * The array is an indefinite-length one (RFC 7049 2.2.1) with every element encoded as it arrives, so a whole
+ * collection is not held in memory before the first byte is written.
+ */
+public class Jackson2CborFluxEncoder extends Jackson2CborEncoder {
+
+    private static final byte START_INDEFINITE_ARRAY = (byte) 0x9F;
+
+    private static final byte BREAK = (byte) 0xFF;
+
+    public Jackson2CborFluxEncoder(ObjectMapper objectMapper) {
+        super(objectMapper, CodecConfig.APPLICATION_CBOR, CodecConfig.APPLICATION_CBOR_SEQ);
+        setStreamingMediaTypes(Collections.singletonList(CodecConfig.APPLICATION_CBOR_SEQ));
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+        if (mimeType != null && CodecConfig.APPLICATION_CBOR_SEQ.isCompatibleWith(mimeType)) {
+            return Flux.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+        return Flux.concat(
+                Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{START_INDEFINITE_ARRAY})),
+                Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)),
+                Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{BREAK})));
+    }
+}
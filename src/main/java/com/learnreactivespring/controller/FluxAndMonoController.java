@@ -1,16 +1,36 @@
 package com.learnreactivespring.controller;
 
+import com.learnreactivespring.stream.SlowConsumerPolicy;
+import com.learnreactivespring.stream.StreamBackpressure;
+import com.learnreactivespring.stream.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.time.Duration;
+import java.util.function.Function;
 
 @RestController
 public class FluxAndMonoController {
 
+    @Autowired
+    StreamBackpressure streamBackpressure;
+
+    @Autowired
+    Ticker ticker;
+
+    @Autowired
+    Scheduler timerScheduler;       //schedulers.timer, see SchedulerConfig
+
+    @Value("${ticker.slow-consumer-policy:latest}")
+    String tickerPolicy;
+
     /**
      * Returns by default a Json and the browser is a blocking client
      * That's why it waits for 4 sec and then render on the browser the result which is
@@ -20,26 +40,29 @@ public class FluxAndMonoController {
     @GetMapping("/flux")
     public Flux<Integer> returnFlux() {
         return Flux.just(1,2,3,4)
-                .delayElements(Duration.ofSeconds(1))
+                .delayElements(Duration.ofSeconds(1), timerScheduler)
                 .log();
     }
 
     @GetMapping(value = "/fluxstream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
     public Flux<Integer> returnFluxStream() {
         return Flux.just(1,2,3,4)
-                .delayElements(Duration.ofSeconds(1))
+                .delayElements(Duration.ofSeconds(1), timerScheduler)
                 .log();
     }
 
     /**
      * Create an infinite stream
-     * This is a cold publisher !!!!!!!!!!!!
+     * By default this is a hot publisher, all the clients share one interval (see Ticker, ticker.shared)
+     * interval can not slow down, the ticks a slow client is not ready for are handled by the
+     * ticker.slow-consumer-policy (or the backpressure query param), by default only the latest tick is kept
+     * No log() here, it would log every tick of every client
      * @return
      */
     @GetMapping(value = "/fluxstream-infinite", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
-    public Flux<Long> returnFluxStreamInfinite() {
-        return Flux.interval(Duration.ofSeconds(1))
-                .log();
+    public Flux<Long> returnFluxStreamInfinite(@RequestParam(required = false) String backpressure) {
+        SlowConsumerPolicy policy = streamBackpressure.policy(backpressure != null ? backpressure : tickerPolicy, SlowConsumerPolicy.LATEST);
+        return streamBackpressure.apply(ticker.ticks(), policy, Function.identity());
     }
 
     @GetMapping("/mono")
@@ -1,10 +1,25 @@
 package com.learnreactivespring.controller.v1;
 
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.codec.CodecConfig;
 import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.BulkBatchResult;
+import com.learnreactivespring.model.CacheStatistics;
+import com.learnreactivespring.model.ItemDelta;
+import com.learnreactivespring.model.ItemPage;
+import com.learnreactivespring.model.ItemStatistics;
+import com.learnreactivespring.model.MultiGetEntry;
+import com.learnreactivespring.model.MultiGetRequest;
 import com.learnreactivespring.repository.ItemReactiveRepository;
+import com.learnreactivespring.service.ItemBulkService;
+import com.learnreactivespring.service.ItemETags;
+import com.learnreactivespring.service.ItemQueryService;
+import com.learnreactivespring.service.ItemStatisticsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -25,35 +40,148 @@ public class ItemController {
     @Autowired
     ItemReactiveRepository itemReactiveRepository;
 
+    @Autowired
+    ItemBulkService itemBulkService;
+
+    @Autowired
+    ItemQueryService itemQueryService;
+
+    @Autowired
+    ItemStatisticsService itemStatisticsService;
+
+    @Autowired
+    ItemCache itemCache;
+
     /**
      * Get items from MongoDB
+     * @param fields - optional projection, eg fields=id,price reads and returns only the id and the price
      */
     @GetMapping(ITEM_END_POINT_V1)
-    public Flux<Item> getAllItems() {
-        return itemReactiveRepository.findAll();
+    public Flux<Item> getAllItems(@RequestParam(required = false) String fields) {
+        return itemQueryService.findAll(fields);
+    }
+
+    /**
+     * Get one page of items, eg /v1/items?limit=100 and then /v1/items?limit=100&after={next of the previous page}
+     * Each page is one index range scan in Mongo, no matter how deep the client pages.
+     * @param limit - page size
+     * @param after - next cursor of the previous page
+     * @param sort - id (default) or price
+     * @param fields - optional projection
+     */
+    @GetMapping(value = ITEM_END_POINT_V1, params = {"limit", "!ids", "!since"})
+    public Mono<ItemPage> getItemsPage(@RequestParam int limit,
+                                       @RequestParam(required = false) String after,
+                                       @RequestParam(required = false) String sort,
+                                       @RequestParam(required = false) String fields) {
+        return itemQueryService.findPage(limit, after, sort, fields);
+    }
+
+    /**
+     * Get many items with one Mongo query, eg /v1/items?ids=ABC,DEF
+     * @param ids - comma separated ids, at most items.mget.max-ids
+     * @param fields - optional projection
+     * @return one entry per id in the order of the request, found is false for an unknown id
+     * ids wins over since and limit, then since over limit, like ItemsHandler.getAllItems.
+     * The other mappings exclude the parameters that win, so a request with two of them is not ambiguous.
+     */
+    @GetMapping(value = ITEM_END_POINT_V1, params = "ids")
+    public Flux<MultiGetEntry> getItemsById(@RequestParam String ids,
+                                            @RequestParam(required = false) String fields) {
+        return itemQueryService.findAllById(ids, fields);
+    }
+
+    /**
+     * Incremental sync, eg /v1/items?since=2020-01-13T10:15:30Z
+     * The items written and deleted at or after since, in the order of the changes. The lastModified of the last
+     * entry is the since of the next sync (keep the same since when nothing came back). Changes are returned once
+     * they are items.sync.settle old, deletes are kept for items.sync.tombstone-ttl.
+     * @param since - ISO-8601 instant or epoch milliseconds, inclusive
+     */
+    @GetMapping(value = ITEM_END_POINT_V1, params = {"since", "!ids"})
+    public Flux<ItemDelta> getItemsModifiedSince(@RequestParam String since) {
+        return itemQueryService.findModifiedSince(since);
+    }
+
+    /**
+     * Same as getItemsById, for more ids than fit in a url. The body is {"ids": ["ABC", "DEF"]}
+     */
+    @PostMapping(ITEM_END_POINT_V1 + "/_mget")
+    public Flux<MultiGetEntry> multiGetItems(@RequestBody MultiGetRequest request,
+                                             @RequestParam(required = false) String fields) {
+        return itemQueryService.findAllById(request.getIds(), fields);
     }
 
+    /**
+     * The whole item is returned with its ETag. Spring answers 304 Not Modified without a body
+     * when the If-None-Match header of the request holds the same ETag.
+     */
     @GetMapping(ITEM_END_POINT_V1 + "/{id}")
-    public Mono<ResponseEntity<Item>> getOneItem(@PathVariable String id) {
-        return itemReactiveRepository.findById(id)
-                .map(item -> new ResponseEntity<>(item, HttpStatus.OK))
+    public Mono<ResponseEntity<Item>> getOneItem(@PathVariable String id,
+                                                 @RequestParam(required = false) String fields) {
+        return itemQueryService.findById(id, fields)
+                .map(item -> fields == null ? withETag(item) : new ResponseEntity<>(item, HttpStatus.OK))
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * POST only creates. The version of the body is ignored (an item echoed back from a GET is a new document too),
+     * an id that is already stored is a 409 Conflict. Use PUT to change an item.
+     */
     @PostMapping(ITEM_END_POINT_V1)
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<Item> createItem(@RequestBody Item item) {
-        return itemReactiveRepository.save(item);
+        item.setVersion(null);
+        return itemReactiveRepository.insert(item)
+                .doOnNext(itemCache::put);
+    }
+
+    /**
+     * Create many items with one request. The body can be a json array or a stream of items
+     * (application/stream+json). Items are stored in batches with one insertMany per batch.
+     * @param items - items to be inserted
+     * @param batchSize - items per insertMany, the configured items.bulk.batch-size if missing
+     * @return one summary per batch
+     */
+    @PostMapping(ITEM_END_POINT_V1 + "/bulk")
+    public Flux<BulkBatchResult> createItems(@RequestBody Flux<Item> items,
+                                             @RequestParam(required = false) Integer batchSize) {
+        return itemBulkService.insertInBatches(items, batchSize);
+    }
+
+    /**
+     * Streaming ingestion of a newline delimited json body of any size.
+     * The request body is read only as fast as the batches are written to Mongo.
+     * Try it with curl -H "Content-Type: application/x-ndjson" --data-binary @items.ndjson http://localhost:8080/v1/items/ingest
+     */
+    @PostMapping(value = ITEM_END_POINT_V1 + "/ingest",
+            consumes = {CodecConfig.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_STREAM_JSON_VALUE,
+                    CodecConfig.APPLICATION_STREAM_SMILE_VALUE},
+            produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, CodecConfig.APPLICATION_STREAM_SMILE_VALUE,
+                    CodecConfig.APPLICATION_CBOR_SEQ_VALUE})
+    public Flux<BulkBatchResult> ingestItems(@RequestBody Flux<Item> items,
+                                             @RequestParam(required = false) Integer batchSize) {
+        return itemBulkService.ingest(items, batchSize);
     }
 
     /**
      * We have to return something (in this case Void) because the call is asynchronous and non-blocking
+     * With an If-Match header, the item is deleted only if its ETag matches, otherwise 412 Precondition Failed
      * @param id
+     * @param ifMatch - optional ETag(s) of the item
      * @return
      */
     @DeleteMapping(ITEM_END_POINT_V1+"/{id}")
-    public Mono<Void> deleteItem(@PathVariable String id) {
-        return itemReactiveRepository.deleteById(id);
+    public Mono<ResponseEntity<Void>> deleteItem(@PathVariable String id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch == null) {
+            return itemReactiveRepository.deleteItem(id, null)     //not deleteById, it leaves a tombstone
+                    .doOnSuccess(deleted -> itemCache.invalidate(id))
+                    .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+        }
+        return itemReactiveRepository.deleteItem(id, ItemETags.parseIfMatch(ifMatch))
+                .doOnSuccess(deleted -> itemCache.invalidate(id))
+                .map(deleted -> new ResponseEntity<>(deleted ? HttpStatus.OK : HttpStatus.PRECONDITION_FAILED));
     }
 
     /**
@@ -67,24 +195,46 @@ public class ItemController {
 
     /**
      * Id and item to be updated in the req (path variable and request body)
-     * using the id get the item from the database
-     * updated the item retrieved with the value from the request body
-     * save the item
-     * return the saved item
+     * the description and the price of the request body are set on the stored item with one findAndModify,
+     * there is no read before the write. Missing (null) fields are not changed.
+     * With an If-Match header, the item is updated only if its ETag matches, otherwise 412 Precondition Failed
+     * return the updated item and its new ETag
      * @param id - Id to be updated
      * @param item  - new item value
+     * @param ifMatch - optional ETag(s) of the item
      * @return
      */
     @PutMapping(ITEM_END_POINT_V1 + "/{id}")
-    public Mono<ResponseEntity<Item>> updateItem(@PathVariable String id, @RequestBody Item item) {
-        return itemReactiveRepository.findById(id)
-                .flatMap(currentItem -> {
-                    currentItem.setPrice(item.getPrice());
-                    currentItem.setDescription(item.getDescription());
-                    return itemReactiveRepository.save(currentItem);
-                })
-                .map(updatedItem -> new ResponseEntity<>(updatedItem, HttpStatus.OK))
-                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    public Mono<ResponseEntity<Item>> updateItem(@PathVariable String id, @RequestBody Item item,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return itemReactiveRepository.updateItem(id, item, ifMatch == null ? null : ItemETags.parseIfMatch(ifMatch))
+                .doOnNext(itemCache::put)
+                .map(this::withETag)
+                .defaultIfEmpty(new ResponseEntity<>(ifMatch == null ? HttpStatus.NOT_FOUND : HttpStatus.PRECONDITION_FAILED));
+    }
+
+    private ResponseEntity<Item> withETag(Item item) {
+        String etag = ItemETags.of(item);
+        return etag == null ? new ResponseEntity<>(item, HttpStatus.OK) : ResponseEntity.ok().eTag(etag).body(item);
     }
 
+    /**
+     * Count, min, max and average price and a price histogram of all the items, computed by Mongo
+     * eg /v1/items/stats?boundaries=0,250,500,1000
+     * @param boundaries - comma separated bucket boundaries of the histogram, items.stats.price-boundaries if missing
+     * @param approximate - true for only the count, estimated from the collection metadata
+     */
+    @GetMapping(ITEM_END_POINT_V1 + "/stats")
+    public Mono<ItemStatistics> getItemStatistics(@RequestParam(required = false) String boundaries,
+                                                  @RequestParam(defaultValue = "false") boolean approximate) {
+        return approximate ? itemStatisticsService.approximateStatistics() : itemStatisticsService.statistics(boundaries);
+    }
+
+    /**
+     * Hit, miss and eviction counters of the item cache used by GET /v1/items/{id} and /v1/fun/items/{id}
+     */
+    @GetMapping(ITEM_END_POINT_V1 + "/cache/stats")
+    public Mono<CacheStatistics> getCacheStatistics() {
+        return Mono.fromSupplier(itemCache::statistics);
+    }
 }
@@ -1,11 +1,22 @@
 package com.learnreactivespring.controller.v1;
 
+import com.learnreactivespring.codec.CodecConfig;
 import com.learnreactivespring.document.ItemCapped;
-import com.learnreactivespring.repository.ItemReactiveCappedRepository;
+import com.learnreactivespring.model.ItemChangeEvent;
+import com.learnreactivespring.model.ItemStreamFilter;
+import com.learnreactivespring.stream.ItemCappedStream;
+import com.learnreactivespring.stream.ItemChangeDemultiplexer;
+import com.learnreactivespring.stream.ItemChangeStream;
+import com.learnreactivespring.stream.SlowConsumerPolicy;
+import com.learnreactivespring.stream.StreamBackpressure;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
@@ -16,7 +27,16 @@ import static com.learnreactivespring.constants.ItemConstants.ITEM_STREAM_END_PO
 public class ItemStreamController {
 
     @Autowired
-    ItemReactiveCappedRepository itemReactiveCappedRepository;
+    ItemCappedStream itemCappedStream;
+
+    @Autowired
+    StreamBackpressure streamBackpressure;
+
+    @Autowired
+    ItemChangeStream itemChangeStream;
+
+    @Autowired
+    ItemChangeDemultiplexer itemChangeDemultiplexer;
 
     /**
      * Use APPLICATION_STREAM_JSON_VALUE, if you want to stream the response
@@ -29,9 +49,82 @@ public class ItemStreamController {
      * stream that will have the effect that it will output the data in chunks, not necessarily exactly when the data
      * arrives. Using this option will disable that buffering.
      * I use this option to process data while it arrives, so I don't have to wait until the request completes
+     * All the subscribers share one tailable cursor, see ItemCappedStream
+     * minPrice, maxPrice and descriptionPrefix are part of the cursor query, Mongo sends only the matching documents
+     * curl -N "http://localhost:8080/v1/stream/items?minPrice=100&descriptionPrefix=Random"
+     * backpressure (buffer, latest, conflate or drop-oldest) overrides items.stream.slow-consumer-policy
+     * Binary streams with Accept: application/stream+x-jackson-smile or application/cbor-seq
+     */
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1, produces = {MediaType.APPLICATION_STREAM_JSON_VALUE,
+            CodecConfig.APPLICATION_STREAM_SMILE_VALUE, CodecConfig.APPLICATION_CBOR_SEQ_VALUE})
+    public Flux<ItemCapped> getItemsStream(@RequestParam(required = false) Double minPrice,
+                                           @RequestParam(required = false) Double maxPrice,
+                                           @RequestParam(required = false) String descriptionPrefix,
+                                           @RequestParam(required = false) String backpressure) {
+        return itemCappedStream.stream(new ItemStreamFilter(minPrice, maxPrice, descriptionPrefix),
+                streamBackpressure.policy(backpressure, null));
+    }
+
+    /**
+     * Server sent events variant, the id of every event is the id of the ItemCapped.
+     * A client that reconnects with the Last-Event-ID header (EventSource does it on its own) continues after
+     * that document, it does not get the whole capped collection again.
+     * curl -N -H "Last-Event-ID: 5e1c..." http://localhost:8080/v1/stream/items/sse
+     */
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1 + "/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ItemCapped>> getItemsEventStream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String descriptionPrefix,
+            @RequestParam(required = false) String backpressure) {
+        ItemStreamFilter filter = new ItemStreamFilter(minPrice, maxPrice, descriptionPrefix);
+        SlowConsumerPolicy policy = streamBackpressure.policy(backpressure, null);
+        Flux<ItemCapped> items = lastEventId == null ? itemCappedStream.stream(filter, policy)
+                : itemCappedStream.resumeAfter(lastEventId, filter, policy);
+        return items.map(ItemCappedStream::toEvent);
+    }
+
+    /**
+     * Inserts, updates and deletes of the Item collection as they happen (Mongo change stream), one json per line.
+     * Needs a replica set, see the replicaset profile.
+     * curl -N http://localhost:8080/v1/stream/items/changes
+     * @param resumeAfter - resumeToken of the last event the client got, the stream continues right after it.
+     *                    400 for a token that is not one, 410 when its change is no longer in the oplog
+     */
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1 + "/changes", produces = {MediaType.APPLICATION_STREAM_JSON_VALUE,
+            CodecConfig.APPLICATION_STREAM_SMILE_VALUE, CodecConfig.APPLICATION_CBOR_SEQ_VALUE})
+    public Flux<ItemChangeEvent> getItemChanges(@RequestParam(required = false) String resumeAfter) {
+        return itemChangeStream.changes(resumeAfter);
+    }
+
+    /**
+     * Server sent events variant, the id of every event is its resume token and the event name the change type.
+     * A client that reconnects with the Last-Event-ID header gets the changes it missed.
      */
-    @GetMapping(value = ITEM_STREAM_END_POINT_V1, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
-    public Flux<ItemCapped> getItemsStream() {
-        return itemReactiveCappedRepository.findItemsBy();
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1 + "/changes/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ItemChangeEvent>> getItemChangesEventStream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return itemChangeStream.changes(lastEventId).map(ItemChangeStream::toEvent);
+    }
+
+    /**
+     * The changes of one item from now on, all the watched items share one change stream (ItemChangeDemultiplexer).
+     * /sse and /changes are literal paths and take precedence over {id}.
+     * curl -N http://localhost:8080/v1/stream/items/5e1c...
+     * backpressure overrides items.watch.slow-consumer-policy
+     */
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1 + "/{id}", produces = {MediaType.APPLICATION_STREAM_JSON_VALUE,
+            CodecConfig.APPLICATION_STREAM_SMILE_VALUE, CodecConfig.APPLICATION_CBOR_SEQ_VALUE})
+    public Flux<ItemChangeEvent> watchItem(@PathVariable String id,
+                                           @RequestParam(required = false) String backpressure) {
+        return itemChangeDemultiplexer.watch(id, streamBackpressure.policy(backpressure, null));
+    }
+
+    @GetMapping(value = ITEM_STREAM_END_POINT_V1 + "/{id}/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ItemChangeEvent>> watchItemEventStream(@PathVariable String id,
+                                                                       @RequestParam(required = false) String backpressure) {
+        return itemChangeDemultiplexer.watch(id, streamBackpressure.policy(backpressure, null))
+                .map(ItemChangeStream::toEvent);
     }
 }
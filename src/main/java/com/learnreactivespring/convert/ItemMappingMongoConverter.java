@@ -0,0 +1,130 @@
+package com.learnreactivespring.convert;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemCapped;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Item and ItemCapped are written to and read from the bson Document of the driver field by field,
+ * the other types go through the property mapping of MappingMongoConverter.
+ * They write the same documents the mapping converter wrote, minus the _class type hint (there are no subtypes):
+ * a String id that is a valid ObjectId is stored as an ObjectId, so the stored documents and the queries stay as
+ * they are. Queries, updates and indexes are still mapped from the @Document metadata, only the documents go
+ * through here.
+ * This is not a custom conversion (MongoCustomConversions): a custom conversion goes through the ConversionService
+ * and a copy of the written document, it allocates more than the property mapping it replaces.
+ */
+public class ItemMappingMongoConverter extends MappingMongoConverter {
+
+    public ItemMappingMongoConverter(DbRefResolver dbRefResolver, MongoMappingContext mappingContext) {
+        super(dbRefResolver, mappingContext);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> S read(Class<S> type, Bson bson) {
+        if (bson instanceof Document) {
+            if (type == Item.class) {
+                return (S) readItem((Document) bson);
+            }
+            if (type == ItemCapped.class) {
+                return (S) readItemCapped((Document) bson);
+            }
+        }
+        return super.read(type, bson);
+    }
+
+    @Override
+    public void write(Object source, Bson bson) {
+        if (bson instanceof Document) {
+            if (source instanceof Item) {
+                writeItem((Item) source, (Document) bson);
+                return;
+            }
+            if (source instanceof ItemCapped) {
+                writeItemCapped((ItemCapped) source, (Document) bson);
+                return;
+            }
+        }
+        super.write(source, bson);
+    }
+
+    static void writeItem(Item item, Document document) {
+        putId(document, item.getId());
+        putIfNotNull(document, "description", item.getDescription());
+        putIfNotNull(document, "price", item.getPrice());
+        putIfNotNull(document, "version", item.getVersion());
+        if (item.getLastModified() != null) {
+            document.put("lastModified", Date.from(item.getLastModified()));
+        }
+    }
+
+    static Item readItem(Document document) {
+        return new Item(id(document), document.getString("description"), price(document),
+                longValue(document.get("version")), instant(document.getDate("lastModified")));
+    }
+
+    static void writeItemCapped(ItemCapped item, Document document) {
+        putId(document, item.getId());
+        putIfNotNull(document, "description", item.getDescription());
+        putIfNotNull(document, "price", item.getPrice());
+    }
+
+    static ItemCapped readItemCapped(Document document) {
+        return new ItemCapped(id(document), document.getString("description"), price(document));
+    }
+
+    /**
+     * No _id for a new document, the driver generates an ObjectId and Spring Data sets it back on the item
+     */
+    private static void putId(Document document, String id) {
+        if (id != null) {
+            document.put("_id", ObjectId.isValid(id) ? new ObjectId(id) : id);
+        }
+    }
+
+    private static void putIfNotNull(Document document, String key, Object value) {
+        if (value != null) {
+            document.put(key, value);
+        }
+    }
+
+    private static String id(Document document) {
+        Object id = document.get("_id");
+        if (id instanceof ObjectId) {
+            return ((ObjectId) id).toHexString();
+        }
+        return id == null ? null : id.toString();
+    }
+
+    /**
+     * The driver reads a bson double as a Double already, an int or a long price (eg written from the shell)
+     * is converted
+     */
+    private static Double price(Document document) {
+        Object price = document.get("price");
+        if (price == null || price instanceof Double) {
+            return (Double) price;
+        }
+        return ((Number) price).doubleValue();
+    }
+
+    private static Instant instant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    private static Long longValue(Object value) {
+        if (value == null || value instanceof Long) {
+            return (Long) value;
+        }
+        return ((Number) value).longValue();
+    }
+}
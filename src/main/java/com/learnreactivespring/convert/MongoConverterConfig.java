@@ -0,0 +1,22 @@
+package com.learnreactivespring.convert;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+/**
+ * Replaces the MappingMongoConverter of Spring Boot, set up the same way (reactive, so no DBRef resolution)
+ */
+@Configuration
+public class MongoConverterConfig {
+
+    @Bean
+    public MappingMongoConverter mappingMongoConverter(MongoMappingContext mappingContext, MongoCustomConversions conversions) {
+        MappingMongoConverter converter = new ItemMappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        return converter;
+    }
+}
@@ -1,12 +1,20 @@
 package com.learnreactivespring.document;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @Document   //This is related to a @Entity of a relational database
+@CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}")    //keyset pagination on price, and any query on price
+@JsonInclude(JsonInclude.Include.NON_NULL)  //fields left out of a projection (?fields=id,price) are not written
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -14,6 +22,19 @@ public class Item {
 
     @Id
     private String id;      //unique Id
-    private String description;
-    private Double price;
+    @Indexed
+    private String description;     //findByDescription
+    private Double price;   //boxed on purpose, null is "not set" for a partial update (PUT) and a projection
+    @Version
+    private Long version;   //incremented on every write, it is the ETag of the item
+    @Indexed
+    private Instant lastModified;   //set on every write (ItemLastModifiedCallback, updateItem), GET /v1/items?since=
+
+    public Item(String id, String description, Double price) {
+        this(id, description, price, null);
+    }
+
+    public Item(String id, String description, Double price, Long version) {
+        this(id, description, price, version, null);
+    }
 }
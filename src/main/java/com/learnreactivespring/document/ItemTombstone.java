@@ -0,0 +1,25 @@
+package com.learnreactivespring.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Left behind by the delete of an Item, so a client syncing with GET /v1/items?since= learns about the deletes too.
+ * Tombstones expire after items.sync.tombstone-ttl (TTL index on deletedAt, see ItemIndexInitializer),
+ * a client that did not sync for longer has to read the whole catalog again.
+ */
+@Document
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemTombstone {
+
+    @Id
+    private String id;      //id of the deleted item
+    private Instant deletedAt;
+}
@@ -5,6 +5,8 @@ import org.springframework.boot.autoconfigure.web.ResourceProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerCodecConfigurer;
@@ -37,8 +39,19 @@ public class FunctionalErrorWebExceptionHandler extends AbstractErrorWebExceptio
     private Mono<ServerResponse> renderErrorResponse(ServerRequest serverRequest) {
         Map<String, Object> errorAttributesMap = getErrorAttributes(serverRequest, false);
         log.info("errorAttributesMap : " + errorAttributesMap); //Key-value pairs on Error response
-        return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+        HttpStatus status = status(getError(serverRequest), errorAttributesMap);
+        return ServerResponse.status(status)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(BodyInserters.fromValue(errorAttributesMap.get("message")));
     }
+
+    private static HttpStatus status(Throwable error, Map<String, Object> errorAttributesMap) {
+        if (error instanceof DuplicateKeyException) {      //POST of an id that is already stored
+            return HttpStatus.CONFLICT;
+        }
+        if (error instanceof OptimisticLockingFailureException) {      //versioned write of a changed item
+            return HttpStatus.PRECONDITION_FAILED;
+        }
+        return HttpStatus.valueOf((Integer) errorAttributesMap.getOrDefault("status", 500)); //eg 400 for a ResponseStatusException
+    }
 }
@@ -1,16 +1,42 @@
 package com.learnreactivespring.handler;
 
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.codec.CodecConfig;
 import com.learnreactivespring.document.Item;
 import com.learnreactivespring.document.ItemCapped;
-import com.learnreactivespring.repository.ItemReactiveCappedRepository;
+import com.learnreactivespring.model.BulkBatchResult;
+import com.learnreactivespring.model.ItemChangeEvent;
+import com.learnreactivespring.model.ItemDelta;
+import com.learnreactivespring.model.ItemPage;
+import com.learnreactivespring.model.ItemStatistics;
+import com.learnreactivespring.model.ItemStreamFilter;
+import com.learnreactivespring.model.MultiGetEntry;
+import com.learnreactivespring.model.MultiGetRequest;
 import com.learnreactivespring.repository.ItemReactiveRepository;
+import com.learnreactivespring.service.ItemBulkService;
+import com.learnreactivespring.service.ItemETags;
+import com.learnreactivespring.service.ItemQueryService;
+import com.learnreactivespring.service.ItemStatisticsService;
+import com.learnreactivespring.stream.ItemCappedStream;
+import com.learnreactivespring.stream.ItemChangeDemultiplexer;
+import com.learnreactivespring.stream.ItemChangeStream;
+import com.learnreactivespring.stream.SlowConsumerPolicy;
+import com.learnreactivespring.stream.StreamBackpressure;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static org.springframework.web.reactive.function.BodyInserters.fromValue;
 
 
@@ -21,61 +47,186 @@ public class ItemsHandler {
     ItemReactiveRepository itemReactiveRepository;
 
     @Autowired
-    ItemReactiveCappedRepository itemReactiveCappedRepository;
+    ItemCappedStream itemCappedStream;
+
+    @Autowired
+    StreamBackpressure streamBackpressure;
+
+    @Autowired
+    ItemChangeStream itemChangeStream;
+
+    @Autowired
+    ItemChangeDemultiplexer itemChangeDemultiplexer;
+
+    @Autowired
+    ItemBulkService itemBulkService;
+
+    @Autowired
+    ItemQueryService itemQueryService;
+
+    @Autowired
+    ItemStatisticsService itemStatisticsService;
+
+    @Autowired
+    ItemCache itemCache;
 
     static Mono<ServerResponse> notFound = ServerResponse.notFound().build();
 
+    static Mono<ServerResponse> preconditionFailed = ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build();
+
+    /**
+     * With a limit query parameter, only one page is returned (see getItemsPage)
+     * With an ids query parameter, only these items are returned (see getItemsById)
+     * With a since query parameter, only the changes since then (see getItemsModifiedSince)
+     * The fields query parameter is an optional projection, eg fields=id,price
+     * ids wins over since and limit, then since over limit, the same as the mappings of ItemController.
+     */
     public Mono<ServerResponse> getAllItems(ServerRequest serverRequest) {
+        String ids = serverRequest.queryParam("ids").orElse(null);
+        if (ids != null) {
+            return getItemsById(serverRequest, ids);
+        }
+        String since = serverRequest.queryParam("since").orElse(null);
+        if (since != null) {
+            return ServerResponse.ok()
+                    .contentType(itemMediaType(serverRequest))
+                    .body(itemQueryService.findModifiedSince(since), ItemDelta.class);
+        }
+        Integer limit = intQueryParam(serverRequest, "limit");
+        if (limit != null) {
+            return getItemsPage(serverRequest, limit);
+        }
+        String fields = serverRequest.queryParam("fields").orElse(null);
         return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(itemReactiveRepository.findAll(), Item.class);
+                .contentType(itemMediaType(serverRequest))
+                .body(itemQueryService.findAll(fields), Item.class);
     }
 
+    private Mono<ServerResponse> getItemsPage(ServerRequest serverRequest, int limit) {
+        String after = serverRequest.queryParam("after").orElse(null);
+        String sort = serverRequest.queryParam("sort").orElse(null);
+        String fields = serverRequest.queryParam("fields").orElse(null);
+        return ServerResponse.ok()
+                .contentType(itemMediaType(serverRequest))
+                .body(itemQueryService.findPage(limit, after, sort, fields), ItemPage.class);
+    }
+
+    /**
+     * Multi-get with one Mongo query, one entry per id in the order of the request
+     */
+    private Mono<ServerResponse> getItemsById(ServerRequest serverRequest, String ids) {
+        String fields = serverRequest.queryParam("fields").orElse(null);
+        return ServerResponse.ok()
+                .contentType(itemMediaType(serverRequest))
+                .body(itemQueryService.findAllById(ids, fields), MultiGetEntry.class);
+    }
+
+    /**
+     * Same as getAllItems with ids, the ids are in the body, eg {"ids": ["ABC", "DEF"]}
+     */
+    public Mono<ServerResponse> multiGetItems(ServerRequest serverRequest) {
+        String fields = serverRequest.queryParam("fields").orElse(null);
+        return serverRequest.bodyToMono(MultiGetRequest.class)
+                .flatMap(request -> ServerResponse.ok()
+                        .contentType(itemMediaType(serverRequest))
+                        .body(itemQueryService.findAllById(request.getIds(), fields), MultiGetEntry.class));
+    }
+
+    /**
+     * The whole item is returned with its ETag, a request with the same ETag in If-None-Match gets 304 Not Modified
+     */
     public Mono<ServerResponse> getOneItem(ServerRequest serverRequest) {
         String id = serverRequest.pathVariable("id");   //read path variable
-        Mono<Item> itemMono = itemReactiveRepository.findById(id);
-        return itemMono.flatMap(item -> ServerResponse
-                .ok()
-                .contentType(MediaType.APPLICATION_JSON)
+        String fields = serverRequest.queryParam("fields").orElse(null);
+        Mono<Item> itemMono = itemQueryService.findById(id, fields);
+        return itemMono.flatMap(item -> (fields == null ? okWithETag(item) : ServerResponse.ok())
+                .contentType(itemMediaType(serverRequest))
                 .body(fromValue(item)))
                 .switchIfEmpty(notFound);
     }
 
+    /**
+     * Price statistics computed by Mongo, boundaries of the histogram from the boundaries query parameter.
+     * With approximate=true, only the estimated count
+     */
+    public Mono<ServerResponse> getItemStatistics(ServerRequest serverRequest) {
+        boolean approximate = serverRequest.queryParam("approximate").map(Boolean::parseBoolean).orElse(false);
+        Mono<ItemStatistics> statistics = approximate ? itemStatisticsService.approximateStatistics()
+                : itemStatisticsService.statistics(serverRequest.queryParam("boundaries").orElse(null));
+        return ServerResponse.ok()
+                .contentType(itemMediaType(serverRequest))
+                .body(statistics, ItemStatistics.class);
+    }
+
+    /**
+     * Same as ItemController.createItem, the version of the body is ignored and an existing id is a 409 Conflict
+     */
     public Mono<ServerResponse> createItem(ServerRequest serverRequest) {
         Mono<Item> itemToBeInserted = serverRequest.bodyToMono(Item.class);
-        return itemToBeInserted.flatMap(item ->
-                    ServerResponse.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(itemReactiveRepository.save(item), Item.class)
-                );
+        return itemToBeInserted.flatMap(item -> {
+                    item.setVersion(null);
+                    return ServerResponse.ok()
+                        .contentType(itemMediaType(serverRequest))
+                        .body(itemReactiveRepository.insert(item).doOnNext(itemCache::put), Item.class);
+                });
     }
 
+    /**
+     * The body can be a json array or a stream of items, stored with one insertMany per batch
+     */
+    public Mono<ServerResponse> createItems(ServerRequest serverRequest) {
+        Integer batchSize = intQueryParam(serverRequest, "batchSize");
+        return ServerResponse.ok()
+                .contentType(itemMediaType(serverRequest))
+                .body(itemBulkService.insertInBatches(serverRequest.bodyToFlux(Item.class), batchSize), BulkBatchResult.class);
+    }
+
+    /**
+     * Streaming ingestion of a newline delimited json (or application/stream+json) body.
+     * The body is read with bodyToFlux only as fast as the batches are written to Mongo.
+     */
+    public Mono<ServerResponse> ingestItems(ServerRequest serverRequest) {
+        Integer batchSize = intQueryParam(serverRequest, "batchSize");
+        return ServerResponse.ok()
+                .contentType(itemStreamMediaType(serverRequest))
+                .body(itemBulkService.ingest(serverRequest.bodyToFlux(Item.class), batchSize), BulkBatchResult.class);
+    }
+
+    /**
+     * With an If-Match header, the item is deleted only if its ETag matches, otherwise 412 Precondition Failed
+     */
     public Mono<ServerResponse> deleteItem(ServerRequest serverRequest) {
         String id = serverRequest.pathVariable("id");
-        Mono<Void> deleteItem = itemReactiveRepository.deleteById(id);
+        String ifMatch = serverRequest.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        if (ifMatch != null) {
+            return itemReactiveRepository.deleteItem(id, ItemETags.parseIfMatch(ifMatch))
+                    .doOnSuccess(deleted -> itemCache.invalidate(id))
+                    .flatMap(deleted -> deleted ? ServerResponse.ok().build() : preconditionFailed);
+        }
+        Mono<Void> deleteItem = itemReactiveRepository.deleteItem(id, null)     //leaves a tombstone
+                .doOnSuccess(deleted -> itemCache.invalidate(id))
+                .then();
         return ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(deleteItem, Void.class);
     }
 
+    /**
+     * With an If-Match header, the item is updated only if its ETag matches, otherwise 412 Precondition Failed
+     */
     public Mono<ServerResponse> updateItem(ServerRequest serverRequest) {
         String id = serverRequest.pathVariable("id");
+        String ifMatch = serverRequest.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        List<Long> expectedVersions = ifMatch == null ? null : ItemETags.parseIfMatch(ifMatch);
         Mono<Item> updatedItem = serverRequest.bodyToMono(Item.class)
-                .flatMap(item -> {
-                    Mono<Item> itemMono = itemReactiveRepository.findById(id)
-                            .flatMap(currentItem -> {
-                                currentItem.setDescription(item.getDescription());
-                                currentItem.setPrice(item.getPrice());
-                                return itemReactiveRepository.save(currentItem);
-                            });
-                    return itemMono;
-                });
+                .flatMap(item -> itemReactiveRepository.updateItem(id, item, expectedVersions))     //one findAndModify, no read before the write
+                .doOnNext(itemCache::put);
 
-        return updatedItem.flatMap(item -> ServerResponse.ok()
-                    .contentType(MediaType.APPLICATION_JSON)
+        return updatedItem.flatMap(item -> okWithETag(item)
+                    .contentType(itemMediaType(serverRequest))
                     .body(fromValue(item))
                 )
-                .switchIfEmpty(notFound);
+                .switchIfEmpty(ifMatch == null ? notFound : preconditionFailed);
     }
 
     public Mono<ServerResponse> itemsEx(ServerRequest serverRequest) {
@@ -84,7 +235,119 @@ public class ItemsHandler {
 
     public Mono<ServerResponse> itemStream(ServerRequest serverRequest) {
         return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_STREAM_JSON)
-                .body(itemReactiveCappedRepository.findItemsBy(), ItemCapped.class);
+                .contentType(itemStreamMediaType(serverRequest))
+                .body(itemCappedStream.stream(streamFilter(serverRequest), slowConsumerPolicy(serverRequest)),
+                        ItemCapped.class);     //shared tailable cursor
+    }
+
+    /**
+     * Server sent events with the id of the ItemCapped as event id, resumed after the Last-Event-ID header
+     */
+    public Mono<ServerResponse> itemEventStream(ServerRequest serverRequest) {
+        String lastEventId = serverRequest.headers().asHttpHeaders().getFirst("Last-Event-ID");
+        ItemStreamFilter filter = streamFilter(serverRequest);
+        SlowConsumerPolicy policy = slowConsumerPolicy(serverRequest);
+        Flux<ItemCapped> items = lastEventId == null ? itemCappedStream.stream(filter, policy)
+                : itemCappedStream.resumeAfter(lastEventId, filter, policy);
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(items.map(ItemCappedStream::toEvent), new ParameterizedTypeReference<ServerSentEvent<ItemCapped>>() {});
+    }
+
+    /**
+     * Changes of the Item collection (Mongo change stream), after the resumeAfter query parameter if there is one
+     */
+    public Mono<ServerResponse> itemChanges(ServerRequest serverRequest) {
+        return ServerResponse.ok()
+                .contentType(itemStreamMediaType(serverRequest))
+                .body(itemChangeStream.changes(serverRequest.queryParam("resumeAfter").orElse(null)), ItemChangeEvent.class);
+    }
+
+    /**
+     * Server sent events with the resume token as event id, resumed after the Last-Event-ID header
+     */
+    public Mono<ServerResponse> itemChangeEventStream(ServerRequest serverRequest) {
+        String lastEventId = serverRequest.headers().asHttpHeaders().getFirst("Last-Event-ID");
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(itemChangeStream.changes(lastEventId).map(ItemChangeStream::toEvent),
+                        new ParameterizedTypeReference<ServerSentEvent<ItemChangeEvent>>() {});
+    }
+
+    /**
+     * Changes of the item with the id path variable, from the shared change stream
+     */
+    public Mono<ServerResponse> watchItem(ServerRequest serverRequest) {
+        return ServerResponse.ok()
+                .contentType(itemStreamMediaType(serverRequest))
+                .body(itemChangeDemultiplexer.watch(serverRequest.pathVariable("id"), slowConsumerPolicy(serverRequest)),
+                        ItemChangeEvent.class);
+    }
+
+    public Mono<ServerResponse> watchItemEventStream(ServerRequest serverRequest) {
+        Flux<ItemChangeEvent> changes = itemChangeDemultiplexer.watch(serverRequest.pathVariable("id"),
+                slowConsumerPolicy(serverRequest));
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(changes.map(ItemChangeStream::toEvent),
+                        new ParameterizedTypeReference<ServerSentEvent<ItemChangeEvent>>() {});
+    }
+
+    /**
+     * json, cbor or smile, from the Accept header
+     */
+    private static MediaType itemMediaType(ServerRequest serverRequest) {
+        return CodecConfig.negotiate(serverRequest.headers().accept(), CodecConfig.ITEM_MEDIA_TYPES);
+    }
+
+    /**
+     * stream+json, stream+x-jackson-smile or cbor-seq, from the Accept header
+     */
+    private static MediaType itemStreamMediaType(ServerRequest serverRequest) {
+        return CodecConfig.negotiate(serverRequest.headers().accept(), CodecConfig.ITEM_STREAM_MEDIA_TYPES);
+    }
+
+    private static ServerResponse.BodyBuilder okWithETag(Item item) {
+        String etag = ItemETags.of(item);
+        return etag == null ? ServerResponse.ok() : ServerResponse.ok().eTag(etag);
+    }
+
+    /**
+     * minPrice, maxPrice and descriptionPrefix query params, they become the query of the tailable cursor
+     */
+    private static ItemStreamFilter streamFilter(ServerRequest serverRequest) {
+        return new ItemStreamFilter(doubleQueryParam(serverRequest, "minPrice"), doubleQueryParam(serverRequest, "maxPrice"),
+                serverRequest.queryParam("descriptionPrefix").orElse(null));
+    }
+
+    /**
+     * backpressure query param, null for items.stream.slow-consumer-policy
+     */
+    private SlowConsumerPolicy slowConsumerPolicy(ServerRequest serverRequest) {
+        return streamBackpressure.policy(serverRequest.queryParam("backpressure").orElse(null), null);
+    }
+
+    private static Double doubleQueryParam(ServerRequest serverRequest, String name) {
+        String value = serverRequest.queryParam(name).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a number");
+        }
+    }
+
+    private static Integer intQueryParam(ServerRequest serverRequest, String name) {
+        String value = serverRequest.queryParam(name).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a number");
+        }
     }
 }
@@ -0,0 +1,78 @@
+package com.learnreactivespring.initialize;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemTombstone;
+import com.learnreactivespring.repository.QueryPlanVerifier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Creates the indexes declared on the documents (@Indexed, @CompoundIndex) once the application is up.
+ * spring.data.mongodb.auto-index-creation is off, the indexes are created here in the background, so a slow
+ * index build does not hold the start up. When they are there, the query plans are verified (items.index.verify-query-plans).
+ * The TTL of the ItemTombstone index is a configuration property (items.sync.tombstone-ttl), it is created here too.
+ */
+@Component
+@Slf4j
+public class ItemIndexInitializer {
+
+    @Autowired
+    ReactiveMongoOperations reactiveMongoOperations;
+
+    @Autowired
+    QueryPlanVerifier queryPlanVerifier;
+
+    @Value("${items.index.verify-query-plans:true}")
+    boolean verifyQueryPlans;
+
+    @Value("${items.sync.tombstone-ttl:30d}")
+    Duration tombstoneTtl;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureIndexes()
+                .thenMany(verifyQueryPlans ? queryPlanVerifier.verify().then() : Flux.empty())
+                .subscribe(null, ex -> log.error("Index creation failed", ex));
+    }
+
+    /**
+     * All the indexes of the application
+     */
+    public Flux<String> ensureIndexes() {
+        return ensureIndexes(Item.class).concatWith(ensureTombstoneIndex());
+    }
+
+    /**
+     * Tombstones are removed by Mongo tombstoneTtl after the delete. The same index serves findDeletedSince.
+     * A changed TTL needs the index to be dropped first, ensureIndex does not change an existing index.
+     */
+    public Flux<String> ensureTombstoneIndex() {
+        return reactiveMongoOperations.indexOps(ItemTombstone.class)
+                .ensureIndex(new Index().on("deletedAt", Sort.Direction.ASC).expire(tombstoneTtl))
+                .doOnNext(index -> log.info("Index {} of {} is there, ttl {}", index, ItemTombstone.class.getSimpleName(), tombstoneTtl))
+                .flux();
+    }
+
+    /**
+     * @return the names of the indexes, they are created if they do not exist
+     */
+    public Flux<String> ensureIndexes(Class<?> type) {
+        IndexResolver indexResolver = IndexResolver.create(reactiveMongoOperations.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOperations = reactiveMongoOperations.indexOps(type);
+        return Flux.fromIterable(indexResolver.resolveIndexFor(type))
+                .concatMap(indexOperations::ensureIndex)
+                .doOnNext(index -> log.info("Index {} of {} is there", index, type.getSimpleName()));
+    }
+}
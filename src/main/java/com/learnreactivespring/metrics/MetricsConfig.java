@@ -0,0 +1,126 @@
+package com.learnreactivespring.metrics;
+
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.scheduler.HashedWheelScheduler;
+import com.learnreactivespring.stream.ItemCappedStream;
+import com.learnreactivespring.stream.ItemChangeDemultiplexer;
+import com.learnreactivespring.stream.StreamBackpressure;
+import com.learnreactivespring.stream.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Metrics on top of the Actuator defaults, scraped from /actuator/prometheus.
+ * The latency of every endpoint (annotated and functional) is http.server.requests, recorded by Actuator,
+ * with the percentiles configured under management.metrics.distribution.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Executor metrics of the Reactor schedulers (parallel, elastic ...) created from now on
+     */
+    @PostConstruct
+    public void enableSchedulerMetrics() {
+        Schedulers.enableMetrics();
+    }
+
+    /**
+     * Wraps every repository of this application with a RepositoryMetricsInterceptor.
+     * Static, so the post processor is there before the repositories are created.
+     */
+    @Bean
+    public static BeanPostProcessor repositoryMetricsPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof Repository)) {
+                    return bean;
+                }
+                for (Class<?> type : ClassUtils.getAllInterfacesAsSet(bean)) {
+                    if (Repository.class.isAssignableFrom(type) && type.getName().startsWith("com.learnreactivespring")) {
+                        ProxyFactory proxyFactory = new ProxyFactory(bean);
+                        proxyFactory.addAdvice(new RepositoryMetricsInterceptor(type.getSimpleName()));
+                        return proxyFactory.getProxy();
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder itemCacheMetrics(ItemCache itemCache) {
+        return registry -> FunctionCounter.builder("items.cache.coalesced", itemCache, ItemCache::coalesced)
+                .description("Item lookups that shared a Mongo read already in flight for the same id")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder itemStreamMetrics(ItemCappedStream itemCappedStream, StreamBackpressure streamBackpressure) {
+        return registry -> {
+            Gauge.builder("items.stream.subscribers", itemCappedStream, ItemCappedStream::subscribers)
+                    .description("Subscribers of the item stream, each one holds a cursor when items.stream.shared is false")
+                    .register(registry);
+            Gauge.builder("items.stream.filtered.cursors", itemCappedStream, ItemCappedStream::filteredCursors)
+                    .description("Tailable cursors of the item stream filters, at most items.stream.max-filtered-cursors")
+                    .register(registry);
+            FunctionCounter.builder("items.stream.slow.consumer.elements", streamBackpressure, StreamBackpressure::dropped)
+                    .description("Elements slow consumers did not get")
+                    .tag("reason", "dropped")
+                    .register(registry);
+            FunctionCounter.builder("items.stream.slow.consumer.elements", streamBackpressure, StreamBackpressure::conflated)
+                    .description("Elements slow consumers did not get")
+                    .tag("reason", "conflated")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * No tag per id, the watched ids are unbounded
+     */
+    @Bean
+    public MeterBinder itemWatchMetrics(ItemChangeDemultiplexer itemChangeDemultiplexer) {
+        return registry -> {
+            Gauge.builder("items.watch.keys", itemChangeDemultiplexer, ItemChangeDemultiplexer::keys)
+                    .description("Items with at least one watcher on /v1/stream/items/{id}")
+                    .register(registry);
+            Gauge.builder("items.watch.subscribers", itemChangeDemultiplexer, ItemChangeDemultiplexer::subscribers)
+                    .description("Watchers of single items")
+                    .register(registry);
+            Gauge.builder("items.watch.subscribers.max.per.key", itemChangeDemultiplexer, ItemChangeDemultiplexer::maxSubscribersPerKey)
+                    .description("Watchers of the most watched item")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tickerMetrics(Ticker ticker) {
+        return registry -> Gauge.builder("ticker.subscribers", ticker, Ticker::subscribers)
+                .description("Subscribers of /fluxstream-infinite")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder timerSchedulerMetrics(Scheduler timerScheduler) {
+        return registry -> {
+            if (timerScheduler instanceof HashedWheelScheduler) {
+                Gauge.builder("schedulers.timer.pending", (HashedWheelScheduler) timerScheduler,
+                        HashedWheelScheduler::pendingTimeouts)
+                        .description("Delays waiting on the hashed wheel")
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.learnreactivespring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of one insertMany round trip of a bulk item request.
+ * A bulk request is split in batches and each batch reports back how many items were requested and inserted,
+ * the generated ids and the error message if Mongo rejected (part of) the batch.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkBatchResult {
+
+    private long batch;         //zero based index of the batch in the request
+    private int requested;
+    private int inserted;
+    private List<String> ids;
+    private String error;
+
+    public static BulkBatchResult inserted(long batch, int requested, List<String> ids) {
+        return new BulkBatchResult(batch, requested, ids.size(), ids, null);
+    }
+
+    public static BulkBatchResult failed(long batch, int requested, int inserted, String error) {
+        return new BulkBatchResult(batch, requested, inserted, Collections.emptyList(), error);
+    }
+}
@@ -0,0 +1,21 @@
+package com.learnreactivespring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counters of an in-process cache since the application started
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatistics {
+
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long size;
+    private long coalesced;     //misses that joined a read of the same id already in flight
+}
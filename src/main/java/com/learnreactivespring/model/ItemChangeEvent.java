@@ -0,0 +1,22 @@
+package com.learnreactivespring.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.learnreactivespring.document.Item;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change of the Item collection, from the Mongo change stream
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemChangeEvent {
+
+    private String type;            //insert, update, replace or delete
+    private String id;
+    private Item item;              //the item after the change, null for a delete
+    private String resumeToken;     //resume the stream right after this change
+}
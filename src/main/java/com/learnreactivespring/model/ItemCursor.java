@@ -0,0 +1,44 @@
+package com.learnreactivespring.model;
+
+import com.learnreactivespring.document.Item;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last item of a page, handed to the client as an opaque string.
+ * The next page starts right after this position (keyset pagination), no documents are skipped on the server.
+ */
+@Data
+@AllArgsConstructor
+public class ItemCursor {
+
+    private ItemSortKey sort;
+    private Double price;       //only for ItemSortKey.PRICE
+    private String id;
+
+    public static ItemCursor after(ItemSortKey sort, Item item) {
+        return new ItemCursor(sort, sort == ItemSortKey.PRICE ? item.getPrice() : null, item.getId());
+    }
+
+    public String encode() {
+        String value = sort.getParam() + ":" + (price == null ? "" : price) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor - the value of a previous encode()
+     * @throws IllegalArgumentException if the cursor was not created by encode()
+     */
+    public static ItemCursor decode(String cursor) {
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = value.split(":", 3);      //the id is last, it can contain ':'
+        if (parts.length != 3 || ItemSortKey.fromParam(parts[0]) == null || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        Double price = parts[1].isEmpty() ? null : Double.valueOf(parts[1]);
+        return new ItemCursor(ItemSortKey.fromParam(parts[0]), price, parts[2]);
+    }
+}
@@ -0,0 +1,35 @@
+package com.learnreactivespring.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemTombstone;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One change of an incremental sync (GET /v1/items?since=), either the item as it is now or the delete of an item.
+ * deleted is true and there is no item for a delete.
+ * lastModified of the last entry is the since of the next sync.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemDelta {
+
+    private String id;
+    private boolean deleted;
+    private Instant lastModified;
+    private Item item;
+
+    public static ItemDelta modified(Item item) {
+        return new ItemDelta(item.getId(), false, item.getLastModified(), item);
+    }
+
+    public static ItemDelta deleted(ItemTombstone tombstone) {
+        return new ItemDelta(tombstone.getId(), true, tombstone.getDeletedAt(), null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.learnreactivespring.model;
+
+import com.learnreactivespring.document.Item;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of items. Pass next as the after parameter to get the following page, it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemPage {
+
+    private List<Item> items;
+    private String next;
+}
@@ -0,0 +1,34 @@
+package com.learnreactivespring.model;
+
+/**
+ * Keys items can be paged on. Both are indexed, so a page is one index range scan.
+ * Items with the same price are ordered by id, so (price, id) is unique.
+ */
+public enum ItemSortKey {
+
+    ID("id"),
+    PRICE("price");
+
+    private final String param;
+
+    ItemSortKey(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * @param param - value of the sort query parameter
+     * @return the matching key or null if there is no such key
+     */
+    public static ItemSortKey fromParam(String param) {
+        for (ItemSortKey key : values()) {
+            if (key.param.equalsIgnoreCase(param)) {
+                return key;
+            }
+        }
+        return null;
+    }
+}
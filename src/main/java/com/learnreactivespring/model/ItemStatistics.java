@@ -0,0 +1,31 @@
+package com.learnreactivespring.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Price statistics of all the items, computed in Mongo.
+ * The price fields are null if no item has a price. An approximate result only has the count.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemStatistics {
+
+    private long count;
+    private boolean approximate;    //count from the collection metadata, without reading the documents
+    private Double minPrice;
+    private Double maxPrice;
+    private Double averagePrice;
+    private List<PriceBucket> histogram;
+    private Long outOfRange;        //items with a price below the first or from the last boundary on
+
+    public static ItemStatistics approximate(long count) {
+        return new ItemStatistics(count, true, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,37 @@
+package com.learnreactivespring.model;
+
+import com.learnreactivespring.document.ItemCapped;
+import lombok.Value;
+
+/**
+ * Predicates of a stream subscriber, they become the query of the tailable cursor.
+ * Subscribers with equal filters share one cursor, see ItemCappedStream. Immutable, it is the key of that cursor.
+ */
+@Value
+public class ItemStreamFilter {
+
+    public static final ItemStreamFilter NONE = new ItemStreamFilter(null, null, null);
+
+    Double minPrice;
+    Double maxPrice;
+    String descriptionPrefix;
+
+    public boolean isEmpty() {
+        return minPrice == null && maxPrice == null && (descriptionPrefix == null || descriptionPrefix.isEmpty());
+    }
+
+    /**
+     * Same as the query of the tailable cursor, for the subscribers filtered in memory.
+     * An item without price does not match a price range, like in Mongo.
+     */
+    public boolean matches(ItemCapped itemCapped) {
+        if (minPrice != null || maxPrice != null) {
+            Double price = itemCapped.getPrice();
+            if (price == null || (minPrice != null && price < minPrice) || (maxPrice != null && price > maxPrice)) {
+                return false;
+            }
+        }
+        return descriptionPrefix == null || descriptionPrefix.isEmpty()
+                || (itemCapped.getDescription() != null && itemCapped.getDescription().startsWith(descriptionPrefix));
+    }
+}
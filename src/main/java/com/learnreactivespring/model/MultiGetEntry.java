@@ -0,0 +1,30 @@
+package com.learnreactivespring.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.learnreactivespring.document.Item;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One requested id of a multi-get, in the order of the request.
+ * found is false and there is no item when no item has this id.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MultiGetEntry {
+
+    private String id;
+    private boolean found;
+    private Item item;
+
+    public static MultiGetEntry found(Item item) {
+        return new MultiGetEntry(item.getId(), true, item);
+    }
+
+    public static MultiGetEntry notFound(String id) {
+        return new MultiGetEntry(id, false, null);
+    }
+}
@@ -0,0 +1,18 @@
+package com.learnreactivespring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Body of POST /v1/items/_mget, eg {"ids": ["ABC", "DEF"]}
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MultiGetRequest {
+
+    private List<String> ids;
+}
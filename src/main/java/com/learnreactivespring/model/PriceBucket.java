@@ -0,0 +1,18 @@
+package com.learnreactivespring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Items with a price from (inclusive) up to to (exclusive)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceBucket {
+
+    private double from;
+    private double to;
+    private long count;
+}
@@ -0,0 +1,24 @@
+package com.learnreactivespring.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Winning plan of a repository query, as reported by explain
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryPlan {
+
+    private String query;
+    private String collection;
+    private List<String> stages;    //from the root of the plan to its leaves, eg [FETCH, IXSCAN]
+
+    public boolean isCollectionScan() {
+        return stages.contains("COLLSCAN");
+    }
+}
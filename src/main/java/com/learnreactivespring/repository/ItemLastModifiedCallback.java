@@ -0,0 +1,30 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.Item;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Sets the lastModified of an Item on every save and insert (including the insertMany of the bulk endpoints),
+ * before it is converted to a document. updateItem does not go through here, it sets lastModified in the same $set.
+ */
+@Component
+public class ItemLastModifiedCallback implements ReactiveBeforeConvertCallback<Item> {
+
+    @Override
+    public Mono<Item> onBeforeConvert(Item item, String collection) {
+        item.setLastModified(now());
+        return Mono.just(item);
+    }
+
+    /**
+     * Mongo stores a date in milliseconds, so the item returned by a write has the lastModified a later read gets
+     */
+    public static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
@@ -13,9 +13,21 @@ import reactor.core.publisher.Flux;
  * -f option (i.e. with “follow” mode). After clients insert new additional documents into a capped collection,
  * the tailable cursor will continue to retrieve documents.
  */
-public interface ItemReactiveCappedRepository extends ReactiveMongoRepository<ItemCapped, String> {
+public interface ItemReactiveCappedRepository extends ReactiveMongoRepository<ItemCapped, String>,
+        ItemReactiveCappedRepositoryCustom {
 
     @Tailable       //gives us the streaming capability
     Flux<ItemCapped> findItemsBy();
 
+    /**
+     * Tail the collection from the document after the given id (resume of a stream)
+     */
+    @Tailable
+    Flux<ItemCapped> findItemsByIdGreaterThan(String id);
+
+    /**
+     * The documents after the given id, without tailing
+     */
+    Flux<ItemCapped> findByIdGreaterThan(String id);
+
 }
@@ -0,0 +1,23 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.ItemCapped;
+import com.learnreactivespring.model.ItemStreamFilter;
+import reactor.core.publisher.Flux;
+
+/**
+ * Criteria queries on the capped collection.
+ * Spring Data picks up the implementation from ItemReactiveCappedRepositoryCustomImpl
+ */
+public interface ItemReactiveCappedRepositoryCustom {
+
+    /**
+     * Tailable cursor with the filter as query, Mongo sends only the matching documents
+     * @param afterId - start after this document, null for the beginning of the collection
+     */
+    Flux<ItemCapped> tailItems(ItemStreamFilter filter, String afterId);
+
+    /**
+     * Same query without tailing, completes with the last matching document
+     */
+    Flux<ItemCapped> findItems(ItemStreamFilter filter, String afterId);
+}
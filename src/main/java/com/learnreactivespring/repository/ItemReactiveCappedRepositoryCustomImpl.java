@@ -0,0 +1,54 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.ItemCapped;
+import com.learnreactivespring.model.ItemStreamFilter;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ItemReactiveCappedRepositoryCustomImpl implements ItemReactiveCappedRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ItemReactiveCappedRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<ItemCapped> tailItems(ItemStreamFilter filter, String afterId) {
+        return mongoOperations.tail(query(filter, afterId), ItemCapped.class);
+    }
+
+    @Override
+    public Flux<ItemCapped> findItems(ItemStreamFilter filter, String afterId) {
+        return mongoOperations.find(query(filter, afterId), ItemCapped.class);
+    }
+
+    private static Query query(ItemStreamFilter filter, String afterId) {
+        Query query = new Query();
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            Criteria price = where("price");
+            if (filter.getMinPrice() != null) {
+                price.gte(filter.getMinPrice());
+            }
+            if (filter.getMaxPrice() != null) {
+                price.lte(filter.getMaxPrice());
+            }
+            query.addCriteria(price);
+        }
+        if (filter.getDescriptionPrefix() != null && !filter.getDescriptionPrefix().isEmpty()) {
+            //anchored, the prefix is matched as it is and not as a pattern
+            query.addCriteria(where("description").regex("^" + Pattern.quote(filter.getDescriptionPrefix())));
+        }
+        if (afterId != null) {
+            query.addCriteria(where("id").gt(new ObjectId(afterId)));
+        }
+        return query;
+    }
+}
@@ -9,8 +9,9 @@ import reactor.core.publisher.Mono;
  * ReactiveMongoRepository<Item, String>
  *     Item => something to store in Mongo
  *     String => type of the key
+ * ItemReactiveRepositoryCustom => queries built with Criteria, implemented in ItemReactiveRepositoryCustomImpl
  */
-public interface ItemReactiveRepository extends ReactiveMongoRepository<Item, String> {
+public interface ItemReactiveRepository extends ReactiveMongoRepository<Item, String>, ItemReactiveRepositoryCustom {
 
      /**
       * Custom read method
@@ -0,0 +1,72 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemTombstone;
+import com.learnreactivespring.model.ItemCursor;
+import com.learnreactivespring.model.ItemSortKey;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Queries that can not be derived from the method name.
+ * Spring Data picks up the implementation from ItemReactiveRepositoryCustomImpl
+ */
+public interface ItemReactiveRepositoryCustom {
+
+    /**
+     * Keyset pagination. Sort, range and limit are all part of the Mongo query.
+     * @param sort - key to order by
+     * @param after - position of the last item of the previous page, null for the first page
+     * @param limit - max items to return
+     * @param fields - fields to read, null for the whole document
+     */
+    Flux<Item> findPage(ItemSortKey sort, ItemCursor after, int limit, Set<String> fields);
+
+    /**
+     * Projection, only the given fields (and the id) are read from Mongo and set on the items
+     */
+    Flux<Item> findAll(Set<String> fields);
+
+    Mono<Item> findById(String id, Set<String> fields);
+
+    /**
+     * One $in query for all the ids, the items come back in no particular order
+     */
+    Flux<Item> findAllById(Collection<String> ids, Set<String> fields);
+
+    /**
+     * Single round trip update ($set with findAndModify). Only the non null description and price of the
+     * given item are set, the other fields of the stored document are left as they are.
+     * @return the updated document, empty if there is no item with this id
+     */
+    Mono<Item> updateItem(String id, Item item);
+
+    /**
+     * Conditional update, the item is updated only if its version is one of the expected versions (If-Match)
+     * @param expectedVersions - null for any version
+     * @return the updated document, empty if there is no item with this id and one of these versions
+     */
+    Mono<Item> updateItem(String id, Item item, List<Long> expectedVersions);
+
+    /**
+     * Conditional delete, an ItemTombstone is left behind for the clients that sync with findModifiedSince
+     * @param expectedVersions - null for any version
+     * @return true if an item with this id and one of these versions was deleted
+     */
+    Mono<Boolean> deleteItem(String id, List<Long> expectedVersions);
+
+    /**
+     * Items written from since to until (both inclusive), in lastModified order (index range scan on lastModified)
+     */
+    Flux<Item> findModifiedSince(Instant since, Instant until);
+
+    /**
+     * Tombstones of the items deleted from since to until (both inclusive), in deletedAt order
+     */
+    Flux<ItemTombstone> findDeletedSince(Instant since, Instant until);
+}
@@ -0,0 +1,175 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemTombstone;
+import com.learnreactivespring.model.ItemCursor;
+import com.learnreactivespring.model.ItemSortKey;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ItemReactiveRepositoryCustomImpl implements ItemReactiveRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ItemReactiveRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<Item> findPage(ItemSortKey sort, ItemCursor after, int limit, Set<String> fields) {
+        return mongoOperations.find(pageQuery(sort, after, limit, fields), Item.class);
+    }
+
+    @Override
+    public Flux<Item> findAll(Set<String> fields) {
+        return mongoOperations.find(project(new Query(), fields), Item.class);
+    }
+
+    @Override
+    public Mono<Item> findById(String id, Set<String> fields) {
+        return mongoOperations.findOne(byIdQuery(id, fields), Item.class);
+    }
+
+    @Override
+    public Flux<Item> findAllById(Collection<String> ids, Set<String> fields) {
+        return mongoOperations.find(byIdsQuery(ids, fields), Item.class);
+    }
+
+    @Override
+    public Mono<Item> updateItem(String id, Item item) {
+        return updateItem(id, item, null);
+    }
+
+    /**
+     * No read before the write, so concurrent updates of different fields can not overwrite each other.
+     * The version is incremented and lastModified is set in the same update.
+     */
+    @Override
+    public Mono<Item> updateItem(String id, Item item, List<Long> expectedVersions) {
+        Update update = new Update().inc("version", 1).set("lastModified", ItemLastModifiedCallback.now());
+        if (item.getDescription() != null) {
+            update.set("description", item.getDescription());
+        }
+        if (item.getPrice() != null) {
+            update.set("price", item.getPrice());
+        }
+        return mongoOperations.findAndModify(withVersion(id, expectedVersions), update,
+                FindAndModifyOptions.options().returnNew(true), Item.class);
+    }
+
+    /**
+     * The tombstone is written after the delete, not in a transaction: if that write fails the delete is reported
+     * as failed and is not seen by the syncing clients until the item is deleted again.
+     * A tombstone of an id that is deleted again is replaced (save), there is one per id.
+     */
+    @Override
+    public Mono<Boolean> deleteItem(String id, List<Long> expectedVersions) {
+        return mongoOperations.remove(withVersion(id, expectedVersions), Item.class)
+                .flatMap(result -> result.getDeletedCount() > 0
+                        ? mongoOperations.save(new ItemTombstone(id, ItemLastModifiedCallback.now())).thenReturn(true)
+                        : Mono.just(false));
+    }
+
+    @Override
+    public Flux<Item> findModifiedSince(Instant since, Instant until) {
+        return mongoOperations.find(modifiedSinceQuery(since, until), Item.class);
+    }
+
+    @Override
+    public Flux<ItemTombstone> findDeletedSince(Instant since, Instant until) {
+        return mongoOperations.find(deletedSinceQuery(since, until), ItemTombstone.class);
+    }
+
+    /**
+     * The queries are package private for the QueryPlanVerifier, it explains the same queries the repository runs
+     */
+    static Query pageQuery(ItemSortKey sort, ItemCursor after, int limit, Set<String> fields) {
+        Query query = project(new Query().limit(limit), fields);
+        if (sort == ItemSortKey.PRICE) {
+            query.with(Sort.by(Sort.Direction.ASC, "price", "id"));
+            if (after != null) {
+                query.addCriteria(priceAfter(after.getPrice(), after.getId()));
+            }
+        } else {
+            query.with(Sort.by(Sort.Direction.ASC, "id"));
+            if (after != null) {
+                query.addCriteria(idAfter(after.getId()));
+            }
+        }
+        return query;
+    }
+
+    static Query byIdQuery(String id, Set<String> fields) {
+        return project(new Query(where("id").is(id)), fields);
+    }
+
+    static Query byIdsQuery(Collection<String> ids, Set<String> fields) {
+        return project(new Query(where("id").in(ids)), fields);
+    }
+
+    static Query modifiedSinceQuery(Instant since, Instant until) {
+        return new Query(where("lastModified").gte(since).lte(until)).with(Sort.by(Sort.Direction.ASC, "lastModified"));
+    }
+
+    static Query deletedSinceQuery(Instant since, Instant until) {
+        return new Query(where("deletedAt").gte(since).lte(until)).with(Sort.by(Sort.Direction.ASC, "deletedAt"));
+    }
+
+    static Query withVersion(String id, List<Long> expectedVersions) {
+        Query query = new Query(where("id").is(id));
+        if (expectedVersions != null) {
+            query.addCriteria(where("version").in(expectedVersions));
+        }
+        return query;
+    }
+
+    private static Query project(Query query, Set<String> fields) {
+        if (fields != null) {
+            fields.forEach(field -> query.fields().include(field));
+        }
+        return query;
+    }
+
+    /**
+     * Ids are either strings (given by the client) or ObjectIds (generated by Mongo).
+     * Strings sort before ObjectIds, but $gt only matches values of the same BSON type,
+     * so after a string id all the ObjectIds are still to come.
+     */
+    private static Criteria idAfter(String id) {
+        if (ObjectId.isValid(id)) {
+            return where("id").gt(new ObjectId(id));
+        }
+        return new Criteria().orOperator(
+                where("id").gt(id),
+                where("id").type(JsonSchemaObject.Type.objectIdType()));
+    }
+
+    /**
+     * (price, id) > (lastPrice, lastId). Items without price sort first.
+     */
+    private static Criteria priceAfter(Double price, String id) {
+        if (price == null) {
+            return new Criteria().orOperator(
+                    where("price").ne(null),
+                    new Criteria().andOperator(where("price").is(null), idAfter(id)));
+        }
+        return new Criteria().orOperator(
+                where("price").gt(price),
+                new Criteria().andOperator(where("price").is(price), idAfter(id)));
+    }
+}
@@ -0,0 +1,211 @@
+package com.learnreactivespring.repository;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemTombstone;
+import com.learnreactivespring.model.ItemCursor;
+import com.learnreactivespring.model.ItemSortKey;
+import com.learnreactivespring.model.QueryPlan;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs explain on a sample of every query method of ItemReactiveRepository and reports the plans with a collection
+ * scan, so a query can not silently turn into a full scan when a query or an index changes.
+ * The derived methods (findByDescription) are explained with the query Spring Data builds from the method name,
+ * the custom methods with the Query objects ItemReactiveRepositoryCustomImpl runs. A query method without a sample
+ * is logged, and fails ItemReactiveRepositoryTest.queriesUseAnIndex.
+ * The tailable cursors of ItemReactiveCappedRepository are left out, a capped collection is read in insertion order.
+ */
+@Component
+@Slf4j
+public class QueryPlanVerifier {
+
+    /**
+     * findAll(fields) reads the whole collection on purpose
+     */
+    static final Set<String> UNFILTERED = Collections.singleton("findAll");
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final QueryMapper queryMapper;
+
+    public QueryPlanVerifier(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+        this.queryMapper = new QueryMapper(mongoOperations.getConverter());
+    }
+
+    /**
+     * @return the plan of every query, a warning is logged for each collection scan
+     */
+    public Flux<QueryPlan> verify() {
+        Map<String, Query> itemQueries = itemQueries();
+        Map<String, Query> tombstoneQueries = tombstoneQueries();
+        Set<String> explained = new HashSet<>();
+        itemQueries.keySet().forEach(name -> explained.add(methodName(name)));
+        tombstoneQueries.keySet().forEach(name -> explained.add(methodName(name)));
+        queryMethods().stream()
+                .filter(method -> !explained.contains(method))
+                .forEach(method -> log.warn("Query method {} of ItemReactiveRepository has no sample to explain", method));
+        return Flux.concat(explainAll(Item.class, itemQueries), explainAll(ItemTombstone.class, tombstoneQueries))
+                .doOnNext(plan -> {
+                    if (plan.isCollectionScan()) {
+                        log.warn("Query {} on {} is a collection scan {}", plan.getQuery(), plan.getCollection(), plan.getStages());
+                    } else {
+                        log.info("Query {} on {} uses an index {}", plan.getQuery(), plan.getCollection(), plan.getStages());
+                    }
+                });
+    }
+
+    /**
+     * The query methods of ItemReactiveRepository (derived and custom) that must have a plan
+     */
+    static Set<String> queryMethods() {
+        return Stream.of(ItemReactiveRepository.class, ItemReactiveRepositoryCustom.class)
+                .flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+                .filter(method -> !method.isDefault() && !Modifier.isStatic(method.getModifiers()))
+                .map(Method::getName)
+                .filter(name -> !UNFILTERED.contains(name))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * @param name - name of a plan, the method name with an optional variant in brackets eg findPage(price)
+     */
+    static String methodName(String name) {
+        int variant = name.indexOf('(');
+        return variant < 0 ? name : name.substring(0, variant);
+    }
+
+    private Flux<QueryPlan> explainAll(Class<?> type, Map<String, Query> queries) {
+        return Flux.fromIterable(queries.entrySet())
+                .concatMap(query -> explain(query.getKey(), type, query.getValue()));
+    }
+
+    /**
+     * The queries of ItemReactiveRepository with sample values, by method
+     */
+    private static Map<String, Query> itemQueries() {
+        String objectId = new ObjectId().toHexString();
+        Map<String, Query> queries = new LinkedHashMap<>();
+        for (Method method : ItemReactiveRepository.class.getDeclaredMethods()) {
+            if (!method.isDefault() && !Modifier.isStatic(method.getModifiers())) {
+                queries.put(method.getName(), derivedQuery(method));
+            }
+        }
+        queries.put("findById", ItemReactiveRepositoryCustomImpl.byIdQuery(objectId, null));
+        queries.put("findAllById", ItemReactiveRepositoryCustomImpl.byIdsQuery(Arrays.asList("ABC", objectId), null));
+        queries.put("findPage(id)", ItemReactiveRepositoryCustomImpl.pageQuery(ItemSortKey.ID,
+                new ItemCursor(ItemSortKey.ID, null, objectId), 10, null));
+        queries.put("findPage(id after a string id)", ItemReactiveRepositoryCustomImpl.pageQuery(ItemSortKey.ID,
+                new ItemCursor(ItemSortKey.ID, null, "ABC"), 10, null));
+        queries.put("findPage(price)", ItemReactiveRepositoryCustomImpl.pageQuery(ItemSortKey.PRICE,
+                new ItemCursor(ItemSortKey.PRICE, 149.99, objectId), 10, null));
+        queries.put("findPage(price after an item without price)", ItemReactiveRepositoryCustomImpl.pageQuery(ItemSortKey.PRICE,
+                new ItemCursor(ItemSortKey.PRICE, null, objectId), 10, null));
+        queries.put("updateItem", ItemReactiveRepositoryCustomImpl.withVersion(objectId, null));
+        queries.put("updateItem(If-Match)", ItemReactiveRepositoryCustomImpl.withVersion(objectId, Arrays.asList(1L, 2L)));
+        queries.put("deleteItem(If-Match)", ItemReactiveRepositoryCustomImpl.withVersion(objectId, Arrays.asList(1L, 2L)));
+        queries.put("findModifiedSince", ItemReactiveRepositoryCustomImpl.modifiedSinceQuery(Instant.now(), Instant.now()));
+        return queries;
+    }
+
+    private static Map<String, Query> tombstoneQueries() {
+        Map<String, Query> queries = new LinkedHashMap<>();
+        queries.put("findDeletedSince", ItemReactiveRepositoryCustomImpl.deletedSinceQuery(Instant.now(), Instant.now()));
+        return queries;
+    }
+
+    /**
+     * The query Spring Data derives from the method name, with a sample value for every property.
+     * Only equality is supported, another keyword fails so that a sample is added here for it.
+     */
+    private static Query derivedQuery(Method method) {
+        PartTree tree = new PartTree(method.getName(), Item.class);
+        List<Criteria> or = new ArrayList<>();
+        tree.forEach(orPart -> {
+            List<Criteria> and = new ArrayList<>();
+            orPart.forEach(part -> {
+                if (part.getType() != Part.Type.SIMPLE_PROPERTY) {
+                    throw new IllegalStateException("No sample for " + part.getType() + " of " + method.getName());
+                }
+                and.add(where(part.getProperty().toDotPath()).is(sample(part.getProperty().getLeafType())));
+            });
+            or.add(and.size() == 1 ? and.get(0) : new Criteria().andOperator(and.toArray(new Criteria[0])));
+        });
+        Query query = new Query(or.size() == 1 ? or.get(0) : new Criteria().orOperator(or.toArray(new Criteria[0])));
+        return query.with(tree.getSort());
+    }
+
+    private static Object sample(Class<?> type) {
+        if (type == String.class) {
+            return "Samsung TV";
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return 149.99;
+        }
+        if (type == Instant.class) {
+            return Instant.now();
+        }
+        throw new IllegalStateException("No sample value for " + type);
+    }
+
+    private Mono<QueryPlan> explain(String name, Class<?> type, Query query) {
+        MongoPersistentEntity<?> entity = mongoOperations.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        String collection = mongoOperations.getCollectionName(type);
+        Document find = new Document("find", collection)
+                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity));
+        if (query.isSorted()) {
+            find.append("sort", queryMapper.getMappedSort(query.getSortObject(), entity));
+        }
+        return mongoOperations.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .map(result -> {
+                    Document queryPlanner = result.get("queryPlanner", Document.class);
+                    List<String> stages = new ArrayList<>();
+                    addStages(queryPlanner.get("winningPlan", Document.class), stages);
+                    return new QueryPlan(name, collection, stages);
+                });
+    }
+
+    /**
+     * Depth first, a stage has one inputStage or many inputStages ($or)
+     */
+    private static void addStages(Document stage, List<String> stages) {
+        if (stage == null) {
+            return;
+        }
+        stages.add(stage.getString("stage"));
+        addStages(stage.get("inputStage", Document.class), stages);
+        List<?> inputStages = stage.get("inputStages", List.class);
+        if (inputStages != null) {
+            inputStages.forEach(inputStage -> addStages((Document) inputStage, stages));
+        }
+    }
+}
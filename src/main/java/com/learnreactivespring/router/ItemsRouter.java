@@ -7,9 +7,15 @@ import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import static com.learnreactivespring.codec.CodecConfig.APPLICATION_CBOR;
+import static com.learnreactivespring.codec.CodecConfig.APPLICATION_CBOR_SEQ;
+import static com.learnreactivespring.codec.CodecConfig.APPLICATION_NDJSON;
+import static com.learnreactivespring.codec.CodecConfig.APPLICATION_SMILE;
+import static com.learnreactivespring.codec.CodecConfig.APPLICATION_STREAM_SMILE;
 import static com.learnreactivespring.constants.ItemConstants.ITEM_FUNCTIONAL_END_POINT_V1;
 import static com.learnreactivespring.constants.ItemConstants.ITEM_STREAM_FUNCTIONAL_END_POINT_V1;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_STREAM_JSON;
 import static org.springframework.web.reactive.function.server.RequestPredicates.*;
 
 @Configuration
@@ -18,11 +24,15 @@ public class ItemsRouter {
     @Bean
     public RouterFunction<ServerResponse> itemRoute(ItemsHandler itemsHandler) {
         return RouterFunctions
-                .route(GET(ITEM_FUNCTIONAL_END_POINT_V1).and(accept(APPLICATION_JSON)), itemsHandler::getAllItems)
-                .andRoute(GET(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON)), itemsHandler::getOneItem)
-                .andRoute(POST(ITEM_FUNCTIONAL_END_POINT_V1).and(accept(APPLICATION_JSON)), itemsHandler::createItem)
-                .andRoute(DELETE(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON)), itemsHandler::deleteItem)
-                .andRoute(PUT(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON)), itemsHandler::updateItem);
+                .route(GET(ITEM_FUNCTIONAL_END_POINT_V1).and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::getAllItems)
+                .andRoute(GET(ITEM_FUNCTIONAL_END_POINT_V1+"/stats").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::getItemStatistics)     //before /{id}
+                .andRoute(GET(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::getOneItem)
+                .andRoute(POST(ITEM_FUNCTIONAL_END_POINT_V1).and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::createItem)
+                .andRoute(POST(ITEM_FUNCTIONAL_END_POINT_V1+"/_mget").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::multiGetItems)
+                .andRoute(POST(ITEM_FUNCTIONAL_END_POINT_V1+"/bulk").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::createItems)
+                .andRoute(POST(ITEM_FUNCTIONAL_END_POINT_V1+"/ingest").and(contentType(APPLICATION_NDJSON, APPLICATION_STREAM_JSON, APPLICATION_STREAM_SMILE)), itemsHandler::ingestItems)
+                .andRoute(DELETE(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::deleteItem)
+                .andRoute(PUT(ITEM_FUNCTIONAL_END_POINT_V1+"/{id}").and(accept(APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE)), itemsHandler::updateItem);
     }
 
     @Bean
@@ -34,6 +44,14 @@ public class ItemsRouter {
     @Bean
     public RouterFunction<ServerResponse> itemStreamRoute(ItemsHandler itemsHandler) {
         return RouterFunctions
-                .route(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1).and(accept(APPLICATION_JSON)), itemsHandler::itemStream);
+                .route(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1)
+                        .and(accept(APPLICATION_JSON, APPLICATION_STREAM_JSON, APPLICATION_STREAM_SMILE, APPLICATION_CBOR_SEQ)), itemsHandler::itemStream)
+                .andRoute(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1+"/sse"), itemsHandler::itemEventStream)
+                .andRoute(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1+"/changes")
+                        .and(accept(APPLICATION_JSON, APPLICATION_STREAM_JSON, APPLICATION_STREAM_SMILE, APPLICATION_CBOR_SEQ)), itemsHandler::itemChanges)
+                .andRoute(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1+"/changes/sse"), itemsHandler::itemChangeEventStream)
+                .andRoute(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1+"/{id}")
+                        .and(accept(APPLICATION_JSON, APPLICATION_STREAM_JSON, APPLICATION_STREAM_SMILE, APPLICATION_CBOR_SEQ)), itemsHandler::watchItem)
+                .andRoute(GET(ITEM_STREAM_FUNCTIONAL_END_POINT_V1+"/{id}/sse"), itemsHandler::watchItemEventStream);
     }
 }
@@ -0,0 +1,286 @@
+package com.learnreactivespring.scheduler;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Reactor Scheduler for the timed operators (delayElements, interval, Mono.delay ...) on top of the hashed timing
+ * wheel of Netty. Scheduling and cancelling a delay is O(1) and takes no lock, where the ScheduledThreadPoolExecutor
+ * of Schedulers.parallel() inserts into and removes from a heap under the lock of its executor.
+ * The wheel only keeps the time: its single thread hands every due task to the dispatcher (Schedulers.parallel()
+ * by default), the tasks never run on the wheel thread.
+ * A delay is rounded up to the next tick (schedulers.hashed-wheel.tick), it is for delays where a few milliseconds
+ * do not matter: heartbeats, timeouts, throttling.
+ * Periodic tasks run at a fixed rate, every run is scheduled from the start time and not from the previous run.
+ */
+public class HashedWheelScheduler implements Scheduler {
+
+    private final HashedWheelTimer timer;
+
+    private final Scheduler dispatcher;
+
+    private volatile boolean disposed;
+
+    public HashedWheelScheduler(Duration tick, int ticksPerWheel, Scheduler dispatcher) {
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("hashed-wheel-timer", true),
+                tick.toNanos(), TimeUnit.NANOSECONDS, ticksPerWheel);
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public Disposable schedule(Runnable task) {
+        return dispatcher.schedule(task);
+    }
+
+    @Override
+    public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+        return new WheelTask(task, dispatcher::schedule, null).start(delay, unit);
+    }
+
+    /**
+     * On a worker of its own, so the runs of the task never overlap (like scheduleAtFixedRate)
+     */
+    @Override
+    public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        Worker worker = createWorker();
+        worker.schedulePeriodically(task, initialDelay, period, unit);
+        return worker;
+    }
+
+    /**
+     * Tasks of a worker run one at a time and in order, on one worker of the dispatcher
+     */
+    @Override
+    public Worker createWorker() {
+        return new WheelWorker(dispatcher.createWorker());
+    }
+
+    /**
+     * Stops the wheel, the pending delays are dropped. The dispatcher is left as it is.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        timer.stop();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Delays waiting on the wheel
+     */
+    public long pendingTimeouts() {
+        return timer.pendingTimeouts();
+    }
+
+    private Timeout newTimeout(WheelTask task, long delay, TimeUnit unit) {
+        try {
+            return timer.newTimeout(expired -> task.fire(), delay, unit);
+        } catch (IllegalStateException ex) {    //the timer is stopped
+            throw new RejectedExecutionException(ex);
+        }
+    }
+
+    /**
+     * Waits on the wheel, then on the dispatcher. Disposing it cancels it in whichever of the two it is.
+     */
+    private class WheelTask implements Runnable, Disposable {
+
+        final Runnable task;
+
+        final Function<Runnable, Disposable> dispatcher;
+
+        final Set<WheelTask> owner;      //pending tasks of the worker, null for a task of the scheduler
+
+        final AtomicReference<Disposable> current = new AtomicReference<>();
+
+        WheelTask(Runnable task, Function<Runnable, Disposable> dispatcher, Set<WheelTask> owner) {
+            this.task = task;
+            this.dispatcher = dispatcher;
+            this.owner = owner;
+        }
+
+        Disposable start(long delay, TimeUnit unit) {
+            schedule(delay, unit);
+            return this;
+        }
+
+        /**
+         * The timeout may fire before it is set as current, the task is then already on the dispatcher
+         */
+        final void schedule(long delay, TimeUnit unit) {
+            Disposable previous = current.get();
+            if (previous == DISPOSED) {
+                return;
+            }
+            Timeout timeout = newTimeout(this, delay, unit);
+            if (!current.compareAndSet(previous, timeout::cancel) && isDisposed()) {
+                timeout.cancel();
+            }
+        }
+
+        /**
+         * On the wheel thread
+         */
+        void fire() {
+            Disposable previous = current.get();
+            if (previous == DISPOSED) {
+                return;
+            }
+            Disposable run = dispatcher.apply(this);
+            if (!current.compareAndSet(previous, run) && isDisposed()) {
+                run.dispose();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (owner != null) {
+                owner.remove(this);
+            }
+            if (!isDisposed()) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void dispose() {
+            Disposable previous = current.getAndSet(DISPOSED);
+            if (previous != null && previous != DISPOSED) {
+                previous.dispose();
+            }
+            if (owner != null) {
+                owner.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return current.get() == DISPOSED;
+        }
+    }
+
+    /**
+     * The next run is on the wheel before this one is dispatched, so a slow run does not shift the next ones
+     */
+    private class PeriodicWheelTask extends WheelTask {
+
+        final long periodNanos;
+
+        long nextRunNanos;      //wheel thread only, after start
+
+        PeriodicWheelTask(Runnable task, Function<Runnable, Disposable> dispatcher, Set<WheelTask> owner, long periodNanos) {
+            super(task, dispatcher, owner);
+            if (periodNanos <= 0) {
+                throw new RejectedExecutionException("The period of a HashedWheelScheduler task must be positive");
+            }
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        Disposable start(long delay, TimeUnit unit) {
+            nextRunNanos = System.nanoTime() + unit.toNanos(delay);
+            return super.start(delay, unit);
+        }
+
+        @Override
+        void fire() {
+            if (isDisposed()) {
+                return;
+            }
+            nextRunNanos += periodNanos;
+            schedule(Math.max(0, nextRunNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            dispatcher.apply(this);
+        }
+
+        /**
+         * Stays with the worker until it is disposed
+         */
+        @Override
+        public void run() {
+            if (!isDisposed()) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Keeps its pending tasks to cancel them when it is disposed, a task leaves the set when it runs or is disposed
+     */
+    private class WheelWorker implements Worker {
+
+        final Worker worker;
+
+        final Set<WheelTask> tasks = ConcurrentHashMap.newKeySet();
+
+        volatile boolean disposed;
+
+        WheelWorker(Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return worker.schedule(task);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            return track(new WheelTask(task, worker::schedule, tasks), delay, unit);
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            return track(new PeriodicWheelTask(task, worker::schedule, tasks, unit.toNanos(period)), initialDelay, unit);
+        }
+
+        private Disposable track(WheelTask wheelTask, long delay, TimeUnit unit) {
+            if (disposed) {
+                throw new RejectedExecutionException("The worker is disposed");
+            }
+            tasks.add(wheelTask);
+            if (disposed) {     //disposed in the meantime, the task may not have been seen
+                wheelTask.dispose();
+                return wheelTask;
+            }
+            return wheelTask.start(delay, unit);
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            tasks.forEach(WheelTask::dispose);
+            worker.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+
+    private static final Disposable DISPOSED = new Disposable() {
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return true;
+        }
+    };
+}
@@ -0,0 +1,33 @@
+package com.learnreactivespring.scheduler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * Scheduler of the timed operators of the endpoints (delayElements, interval), schedulers.timer is
+     * parallel (Schedulers.parallel(), the Reactor default) or hashed-wheel (HashedWheelScheduler, dispatching to
+     * Schedulers.parallel()).
+     * dispose stops the wheel, it does nothing on the shared Schedulers.parallel()
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler timerScheduler(@Value("${schedulers.timer:parallel}") String timer,
+                                    @Value("${schedulers.hashed-wheel.tick:10ms}") Duration tick,
+                                    @Value("${schedulers.hashed-wheel.ticks-per-wheel:512}") int ticksPerWheel) {
+        switch (timer) {
+            case "parallel":
+                return Schedulers.parallel();
+            case "hashed-wheel":
+                return new HashedWheelScheduler(tick, ticksPerWheel, Schedulers.parallel());
+            default:
+                throw new IllegalArgumentException("Unknown schedulers.timer " + timer);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.learnreactivespring.service;
+
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.BulkBatchResult;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import com.mongodb.MongoBulkWriteException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Group incoming items in batches and store every batch with one insertMany call
+ * (ItemReactiveRepository.insert(Iterable)), instead of one save round trip per item.
+ * Used by both the annotated controller and the functional handler.
+ */
+@Component
+@Slf4j
+public class ItemBulkService {
+
+    @Autowired
+    ItemReactiveRepository itemReactiveRepository;
+
+    @Autowired
+    ItemCache itemCache;
+
+    @Value("${items.bulk.batch-size:500}")
+    int defaultBatchSize;
+
+    @Value("${items.bulk.max-batch-size:5000}")
+    int maxBatchSize;
+
+    @Value("${items.ingest.max-in-flight-batches:4}")
+    int maxInFlightBatches;
+
+    /**
+     * Same pipeline as ingest (flatMapSequential), with one batch in flight and a prefetch of 1. Batches are inserted
+     * one after the other, so the next batch is requested from the body only when Mongo has acknowledged the previous
+     * one. A bulk request holds at most one batch in memory and uses one connection of the pool, and the batches
+     * are stored in body order, like the single insertMany call of a small request.
+     * @param items - items of the request body
+     * @param batchSize - requested batch size, null for the configured default
+     * @return one result per batch
+     */
+    public Flux<BulkBatchResult> insertInBatches(Flux<Item> items, Integer batchSize) {
+        return insertInBatches(items, resolveBatchSize(batchSize), 1);
+    }
+
+    /**
+     * Streaming ingestion of an unbounded body. At most items.ingest.max-in-flight-batches insertMany calls run
+     * at the same time, so at most (in flight batches * batch size) items are requested from the body.
+     * The body is read as fast as Mongo acknowledges the writes and memory stays flat whatever the upload size.
+     * @param items - items decoded from the body as they arrive
+     * @param batchSize - requested batch size, null for the configured default
+     * @return one result per batch, in the order of the batches
+     */
+    public Flux<BulkBatchResult> ingest(Flux<Item> items, Integer batchSize) {
+        return insertInBatches(items, resolveBatchSize(batchSize), maxInFlightBatches);
+    }
+
+    private Flux<BulkBatchResult> insertInBatches(Flux<Item> items, int batchSize, int inFlightBatches) {
+        return items.buffer(batchSize)
+                .index()
+                .flatMapSequential(batch -> insertBatch(batch.getT1(), batch.getT2()), inFlightBatches, 1);
+    }
+
+    public int resolveBatchSize(Integer batchSize) {
+        if (batchSize == null) {
+            return defaultBatchSize;
+        }
+        if (batchSize < 1 || batchSize > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "batchSize must be between 1 and " + maxBatchSize);
+        }
+        return batchSize;
+    }
+
+    private Mono<BulkBatchResult> insertBatch(long index, List<Item> batch) {
+        return itemReactiveRepository.insert(batch)
+                .map(Item::getId)
+                .collectList()
+                .doOnNext(itemCache::invalidateAll)      //drop cached "not found" entries of client given ids
+                .map(ids -> BulkBatchResult.inserted(index, batch.size(), ids))
+                .onErrorResume(ex -> {
+                    log.error("Bulk insert of batch " + index + " failed : ", ex);
+                    itemCache.invalidateAll(clientIds(batch));      //the documents before the failing one are stored
+                    return Mono.just(BulkBatchResult.failed(index, batch.size(), insertedCount(ex), ex.getMessage()));
+                });
+    }
+
+    private static List<String> clientIds(List<Item> batch) {
+        return batch.stream()
+                .map(Item::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * insertMany is ordered, so the documents before the failing one are already stored.
+     */
+    private int insertedCount(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException) {
+                return ((MongoBulkWriteException) cause).getWriteResult().getInsertedCount();
+            }
+        }
+        return 0;
+    }
+}
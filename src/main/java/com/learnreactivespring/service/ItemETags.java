@@ -0,0 +1,47 @@
+package com.learnreactivespring.service;
+
+import com.learnreactivespring.document.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strong ETags of items, built from the @Version of the document.
+ * GET answers 304 Not Modified on its own when If-None-Match holds the current ETag (checkNotModified of WebFlux),
+ * PUT and DELETE check If-Match against the version as part of the Mongo query.
+ */
+public final class ItemETags {
+
+    private ItemETags() {
+    }
+
+    /**
+     * @return the quoted ETag of the item, null for an item without version
+     */
+    public static String of(Item item) {
+        return item.getVersion() == null ? null : "\"" + item.getVersion() + "\"";
+    }
+
+    /**
+     * @param ifMatch - value of the If-Match header, eg "3" or "3", "4"
+     * @return the versions the stored item has to be at, null for * (any version).
+     *         ETags that are not ours (weak, not a number) can never match, an empty list is returned for them
+     */
+    public static List<Long> parseIfMatch(String ifMatch) {
+        if (ifMatch.trim().equals("*")) {
+            return null;
+        }
+        List<Long> versions = new ArrayList<>();
+        for (String etag : ifMatch.split(",")) {
+            String value = etag.trim();
+            if (value.length() > 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                try {
+                    versions.add(Long.valueOf(value.substring(1, value.length() - 1)));
+                } catch (NumberFormatException ex) {
+                    //not an ETag of an item, can not match
+                }
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,222 @@
+package com.learnreactivespring.service;
+
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.ItemCursor;
+import com.learnreactivespring.model.ItemDelta;
+import com.learnreactivespring.model.ItemPage;
+import com.learnreactivespring.model.ItemSortKey;
+import com.learnreactivespring.model.MultiGetEntry;
+import com.learnreactivespring.repository.ItemLastModifiedCallback;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of the items shared by the annotated controller and the functional handler.
+ * Validates the request parameters and turns them into repository queries.
+ */
+@Component
+public class ItemQueryService {
+
+    @Autowired
+    ItemReactiveRepository itemReactiveRepository;
+
+    @Autowired
+    ItemCache itemCache;
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Value("${items.page.max-limit:1000}")
+    int maxLimit;
+
+    @Value("${items.mget.max-ids:1000}")
+    int maxIds;
+
+    @Value("${items.sync.settle:5s}")
+    Duration syncSettle;
+
+    /**
+     * @param fields - comma separated fields to return, eg id,price. null for whole items
+     */
+    public Flux<Item> findAll(String fields) {
+        Set<String> projection = parseFields(fields);
+        return projection == null ? itemReactiveRepository.findAll() : itemReactiveRepository.findAll(projection);
+    }
+
+    /**
+     * Whole items are served from the ItemCache, projections are read from Mongo
+     */
+    public Mono<Item> findById(String id, String fields) {
+        Set<String> projection = parseFields(fields);
+        return projection == null ? itemCache.findById(id) : itemReactiveRepository.findById(id, projection);
+    }
+
+    /**
+     * Multi-get, all the ids are resolved with one $in query instead of one request per id.
+     * Whole items are served from the ItemCache and only the ids that are not cached are read from Mongo.
+     * The ids are matched as the repository stores them (see storedId), an upper case ObjectId is found too.
+     * @param ids - the requested ids, a repeated id is returned once
+     * @param fields - comma separated fields to return, null for whole items
+     * @return one entry per id in the order of the request, with found false for an unknown id
+     */
+    public Flux<MultiGetEntry> findAllById(List<String> ids, String fields) {
+        Set<String> requested = new LinkedHashSet<>();
+        if (ids != null) {
+            ids.stream()
+                    .filter(id -> id != null && !id.trim().isEmpty())
+                    .forEach(id -> requested.add(storedId(id.trim())));
+        }
+        if (requested.isEmpty() || requested.size() > maxIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + maxIds + " ids must be requested");
+        }
+        Set<String> projection = parseFields(fields);
+        Mono<Map<String, Item>> items = projection == null ? itemCache.findAllById(requested)
+                : itemReactiveRepository.findAllById(requested, projection).collectMap(Item::getId);
+
+        return items.flatMapIterable(found -> requested.stream()
+                .map(id -> found.containsKey(id) ? MultiGetEntry.found(found.get(id)) : MultiGetEntry.notFound(id))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param ids - comma separated ids, eg ids=ABC,DEF
+     */
+    public Flux<MultiGetEntry> findAllById(String ids, String fields) {
+        return findAllById(ids == null ? null : Arrays.asList(ids.split(",")), fields);
+    }
+
+    /**
+     * Incremental sync, the items written and deleted at or after since, in the order they were written.
+     * Items and tombstones are two index range scans merged on the time of the change, so the delete of an item
+     * comes before the item created again with the same id.
+     * since is inclusive: items written in the same millisecond as the last entry of the previous sync are sent
+     * again rather than missed, applying an entry twice changes nothing.
+     * lastModified is taken from the clock of the instance before the write is sent, so a write can commit after
+     * a newer one was already returned (a bulk batch in flight, another instance with a skewed clock). Only the
+     * changes older than items.sync.settle are returned, the next since (the lastModified of the last entry, or the
+     * same since when nothing came back) stays behind that window. The since of a client must never be taken
+     * from its own clock or the time of the request.
+     * @param since - ISO-8601 instant (2020-01-13T10:15:30Z) or epoch milliseconds
+     */
+    public Flux<ItemDelta> findModifiedSince(String since) {
+        Instant from = parseSince(since);
+        Instant until = ItemLastModifiedCallback.now().minus(syncSettle);
+        if (from.isAfter(until)) {
+            return Flux.empty();
+        }
+        return Flux.mergeOrdered(Comparator.comparing(ItemDelta::getLastModified),
+                itemReactiveRepository.findModifiedSince(from, until).map(ItemDelta::modified),
+                itemReactiveRepository.findDeletedSince(from, until).map(ItemDelta::deleted));
+    }
+
+    /**
+     * One more item than the limit is read, to know if there is a next page without another round trip.
+     * @param limit - page size
+     * @param after - cursor of the previous page, null for the first page
+     * @param sort - id (default) or price. Must match the key of the cursor
+     * @param fields - comma separated fields to return, null for whole items
+     */
+    public Mono<ItemPage> findPage(int limit, String after, String sort, String fields) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxLimit);
+        }
+        ItemCursor cursor = after == null ? null : decodeCursor(after);
+        ItemSortKey sortKey = resolveSortKey(sort, cursor);
+        Set<String> projection = parseFields(fields);
+        if (projection != null && sortKey == ItemSortKey.PRICE) {
+            projection.add("price");        //needed for the next cursor
+        }
+
+        return itemReactiveRepository.findPage(sortKey, cursor, limit + 1, projection)
+                .collectList()
+                .map(items -> {
+                    if (items.size() <= limit) {
+                        return new ItemPage(items, null);
+                    }
+                    List<Item> page = new ArrayList<>(items.subList(0, limit));
+                    return new ItemPage(page, ItemCursor.after(sortKey, page.get(limit - 1)).encode());
+                });
+    }
+
+    /**
+     * Only properties of the Item document can be requested. The id is always returned.
+     * @return the requested property names, null if all of them are requested
+     */
+    Set<String> parseFields(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        MongoPersistentEntity<?> entity = mongoOperations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Item.class);
+        Set<String> projection = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (entity.getPersistentProperty(name) == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field " + name);
+            }
+            projection.add(name);
+        }
+        return projection;
+    }
+
+    /**
+     * A valid ObjectId hex string is stored as an ObjectId and read back in lower case, any other id as it is
+     */
+    static String storedId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id).toHexString() : id;
+    }
+
+    static Instant parseSince(String since) {
+        String value = since == null ? "" : since.trim();
+        try {
+            return value.chars().allMatch(Character::isDigit) && !value.isEmpty()
+                    ? Instant.ofEpochMilli(Long.parseLong(value)) : Instant.parse(value);
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must be an ISO-8601 instant or epoch milliseconds");
+        }
+    }
+
+    private static ItemCursor decodeCursor(String after) {
+        try {
+            return ItemCursor.decode(after);
+        } catch (IllegalArgumentException ex) {    //NumberFormatException is an IllegalArgumentException too
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid after cursor");
+        }
+    }
+
+    private static ItemSortKey resolveSortKey(String sort, ItemCursor cursor) {
+        if (sort == null) {
+            return cursor == null ? ItemSortKey.ID : cursor.getSort();
+        }
+        ItemSortKey sortKey = ItemSortKey.fromParam(sort);
+        if (sortKey == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown sort key " + sort);
+        }
+        if (cursor != null && cursor.getSort() != sortKey) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The after cursor was created for sort " + cursor.getSort().getParam());
+        }
+        return sortKey;
+    }
+}
@@ -0,0 +1,127 @@
+package com.learnreactivespring.service;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.ItemStatistics;
+import com.learnreactivespring.model.PriceBucket;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.bucket;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.facet;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Price statistics of the items, computed by Mongo with one aggregation. Only the result crosses the wire,
+ * not the items.
+ */
+@Component
+public class ItemStatisticsService {
+
+    private static final String OUT_OF_RANGE = "outOfRange";
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Value("${items.stats.price-boundaries:0,100,200,300,400,500}")
+    List<Double> defaultBoundaries;
+
+    @Value("${items.stats.max-buckets:100}")
+    int maxBuckets;
+
+    /**
+     * One $facet aggregation: a $group for the count, min, max and average price and a $bucket for the histogram.
+     * @param boundaries - comma separated, ascending, bucket boundaries. null for items.stats.price-boundaries
+     */
+    public Mono<ItemStatistics> statistics(String boundaries) {
+        List<Double> bucketBoundaries = boundaries == null ? defaultBoundaries : parseBoundaries(boundaries);
+        Aggregation aggregation = newAggregation(
+                facet(group().count().as("count")
+                        .min("price").as("minPrice")
+                        .max("price").as("maxPrice")
+                        .avg("price").as("averagePrice")).as("summary")
+                .and(match(where("price").ne(null)),
+                        bucket("price").withBoundaries(bucketBoundaries.toArray()).withDefaultBucket(OUT_OF_RANGE)
+                                .andOutputCount().as("count")).as("histogram"));
+
+        return mongoOperations.aggregate(aggregation, Item.class, Document.class)
+                .next()
+                .map(result -> toStatistics(result, bucketBoundaries));
+    }
+
+    /**
+     * Count from the collection metadata (estimatedDocumentCount), no document is read.
+     * It can be off after an unclean shutdown or while a sharded cluster moves chunks.
+     */
+    public Mono<ItemStatistics> approximateStatistics() {
+        return mongoOperations.execute(Item.class, collection -> collection.estimatedDocumentCount())
+                .next()
+                .map(ItemStatistics::approximate);
+    }
+
+    /**
+     * $bucket leaves out the empty buckets, they are added back with a zero count
+     */
+    static ItemStatistics toStatistics(Document result, List<Double> boundaries) {
+        List<Document> summaries = result.getList("summary", Document.class, Collections.emptyList());
+        Document summary = summaries.isEmpty() ? new Document() : summaries.get(0);
+        List<PriceBucket> histogram = new ArrayList<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            histogram.add(new PriceBucket(boundaries.get(i), boundaries.get(i + 1), 0));
+        }
+        long outOfRange = 0;
+        for (Document bucket : result.getList("histogram", Document.class, Collections.emptyList())) {
+            long count = ((Number) bucket.get("count")).longValue();
+            Object lowerBound = bucket.get("_id");
+            if (OUT_OF_RANGE.equals(lowerBound)) {
+                outOfRange = count;
+            } else {
+                histogram.get(boundaries.indexOf(((Number) lowerBound).doubleValue())).setCount(count);
+            }
+        }
+        return new ItemStatistics(number(summary.get("count")).longValue(), false,
+                doubleValue(summary.get("minPrice")), doubleValue(summary.get("maxPrice")),
+                doubleValue(summary.get("averagePrice")), histogram, outOfRange);
+    }
+
+    List<Double> parseBoundaries(String boundaries) {
+        List<Double> parsed = new ArrayList<>();
+        try {
+            for (String boundary : boundaries.split(",")) {
+                parsed.add(Double.valueOf(boundary.trim()));
+            }
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "boundaries must be numbers");
+        }
+        if (parsed.size() < 2 || parsed.size() > maxBuckets + 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 2 and " + (maxBuckets + 1) + " boundaries are needed");
+        }
+        for (int i = 1; i < parsed.size(); i++) {
+            if (parsed.get(i) <= parsed.get(i - 1)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "boundaries must be in ascending order");
+            }
+        }
+        return parsed;
+    }
+
+    private static Number number(Object value) {
+        return value == null ? 0 : (Number) value;
+    }
+
+    private static Double doubleValue(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+}
@@ -0,0 +1,105 @@
+package com.learnreactivespring.stream;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pending elements of one subscriber by key. A new element replaces the pending element with the same key
+ * (it keeps its place in the queue), so a subscriber that falls behind gets the latest version of every key
+ * instead of every version. Elements are emitted only as they are requested.
+ */
+final class ConflatingBuffer<T> {
+
+    private final FluxSink<T> sink;
+
+    private final Function<? super T, ?> key;
+
+    private final int maxKeys;
+
+    private final SlowConsumerCounters counters;
+
+    private final Map<Object, T> pending = new LinkedHashMap<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private boolean done;
+
+    private ConflatingBuffer(FluxSink<T> sink, Function<? super T, ?> key, int maxKeys, SlowConsumerCounters counters) {
+        this.sink = sink;
+        this.key = key;
+        this.maxKeys = maxKeys;
+        this.counters = counters;
+    }
+
+    /**
+     * @param maxKeys - the oldest pending element is dropped when there are more keys pending
+     */
+    static <T> Flux<T> conflate(Flux<T> source, Function<? super T, ?> key, int maxKeys, SlowConsumerCounters counters) {
+        return Flux.create(sink -> {
+            ConflatingBuffer<T> buffer = new ConflatingBuffer<>(sink, key, maxKeys, counters);
+            sink.onRequest(n -> buffer.drain());
+            Disposable upstream = source.subscribe(buffer::next, sink::error, buffer::complete);
+            sink.onDispose(upstream);
+        });
+    }
+
+    private void next(T element) {
+        synchronized (pending) {
+            if (pending.put(key.apply(element), element) != null) {
+                counters.conflated();
+            } else if (pending.size() > maxKeys) {
+                Iterator<T> oldest = pending.values().iterator();
+                oldest.next();
+                oldest.remove();
+                counters.dropped();
+            }
+        }
+        drain();
+    }
+
+    private void complete() {
+        synchronized (pending) {
+            done = true;
+        }
+        drain();
+    }
+
+    private T poll() {
+        synchronized (pending) {
+            Iterator<T> oldest = pending.values().iterator();
+            if (!oldest.hasNext()) {
+                return null;
+            }
+            T element = oldest.next();
+            oldest.remove();
+            return element;
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;     //the thread in the loop emits it
+        }
+        do {
+            while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                T element = poll();
+                if (element == null) {
+                    break;
+                }
+                sink.next(element);
+            }
+            synchronized (pending) {
+                if (done && pending.isEmpty()) {
+                    sink.complete();
+                }
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,229 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.document.ItemCapped;
+import com.learnreactivespring.model.ItemStreamFilter;
+import com.learnreactivespring.repository.ItemReactiveCappedRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Source of the item stream endpoints (ItemStreamController and ItemsHandler.itemStream).
+ * In shared mode (items.stream.shared, the default) one tailable cursor per application instance is multicast
+ * to all subscribers. The cursor is opened by the first subscriber and closed when the last one leaves,
+ * so Mongo sees one cursor no matter how many clients are connected.
+ * The cursor starts from the beginning of the capped collection, so only the subscribers that are there when it
+ * opens get the documents that were already stored. The others get the documents inserted after they subscribed.
+ * Every subscriber has its own bounded buffer (items.stream.subscriber-buffer-size), what happens to a subscriber
+ * that can not keep up depends on its SlowConsumerPolicy (items.stream.slow-consumer-policy or the backpressure query
+ * parameter). By default it overflows its buffer and is detached from the cursor (it gets an overflow error after the
+ * buffered items), instead of slowing down the cursor for everybody else.
+ * A dedicated cursor (items.stream.shared false) gets the same policy, the driver fetches the batches of a tailable
+ * cursor ahead of the demand so it does not keep a stalled connection bounded by itself.
+ * A subscriber with an ItemStreamFilter gets a cursor with the filter as query, so Mongo sends only the matching
+ * documents. Subscribers with equal filters share that cursor the same way, it is dropped with its last subscriber.
+ * The filters come from the clients, so there are at most items.stream.max-filtered-cursors of these cursors.
+ * A subscriber with another filter beyond that gets the shared cursor filtered in memory.
+ */
+@Component
+@Slf4j
+public class ItemCappedStream {
+
+    private final ItemReactiveCappedRepository itemReactiveCappedRepository;
+
+    private final boolean shared;
+
+    private final StreamBackpressure streamBackpressure;
+
+    private final SlowConsumerPolicy defaultPolicy;
+
+    private final Flux<ItemCapped> sharedCursor;
+
+    private final ConcurrentMap<ItemStreamFilter, Flux<ItemCapped>> filteredCursors = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final int maxFilteredCursors;
+
+    public ItemCappedStream(ItemReactiveCappedRepository itemReactiveCappedRepository,
+                            StreamBackpressure streamBackpressure,
+                            @Value("${items.stream.shared:true}") boolean shared,
+                            @Value("${items.stream.slow-consumer-policy:buffer}") String defaultPolicy,
+                            @Value("${items.stream.max-filtered-cursors:100}") int maxFilteredCursors) {
+        this.itemReactiveCappedRepository = itemReactiveCappedRepository;
+        this.maxFilteredCursors = maxFilteredCursors;
+        this.streamBackpressure = streamBackpressure;
+        this.shared = shared;
+        this.defaultPolicy = SlowConsumerPolicy.fromParam(defaultPolicy);
+        if (this.defaultPolicy == null) {
+            throw new IllegalArgumentException("Unknown items.stream.slow-consumer-policy " + defaultPolicy);
+        }
+        this.sharedCursor = itemReactiveCappedRepository.findItemsBy()
+                .doOnSubscribe(subscription -> log.info("Opening the shared tailable cursor"))
+                .doOnCancel(() -> log.info("Closing the shared tailable cursor, no subscribers left"))
+                .publish()
+                .refCount();
+    }
+
+    public Flux<ItemCapped> stream() {
+        return stream(ItemStreamFilter.NONE);
+    }
+
+    public Flux<ItemCapped> stream(ItemStreamFilter filter) {
+        return stream(filter, null);
+    }
+
+    /**
+     * @param policy - null for items.stream.slow-consumer-policy
+     */
+    public Flux<ItemCapped> stream(ItemStreamFilter filter, SlowConsumerPolicy policy) {
+        boolean unfiltered = filter == null || filter.isEmpty();
+        if (!shared) {      //one tailable cursor per subscriber
+            return guard(unfiltered ? itemReactiveCappedRepository.findItemsBy()
+                    : itemReactiveCappedRepository.tailItems(filter, null), policy);
+        }
+        return guard(unfiltered ? sharedCursor : filteredCursor(filter), policy);
+    }
+
+    /**
+     * SlowConsumerPolicy of a subscriber, and its count in subscribers()
+     */
+    private Flux<ItemCapped> guard(Flux<ItemCapped> cursor, SlowConsumerPolicy policy) {
+        return streamBackpressure.apply(cursor, policy == null ? defaultPolicy : policy, ItemCapped::getId)
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    /**
+     * The size check and computeIfAbsent are not atomic, concurrent subscribers can open a few cursors more than the limit
+     */
+    private Flux<ItemCapped> filteredCursor(ItemStreamFilter filter) {
+        Flux<ItemCapped> cursor = filteredCursors.get(filter);
+        if (cursor != null) {
+            return cursor;
+        }
+        if (filteredCursors.size() >= maxFilteredCursors) {
+            return sharedCursor.filter(filter::matches);
+        }
+        return filteredCursors.computeIfAbsent(filter, this::sharedCursor);
+    }
+
+    /**
+     * A subscriber can get the cursor from the map just before its last subscriber leaves and open it again,
+     * while a newer cursor for the same filter is in the map. So a cursor removes only itself from the map.
+     */
+    private Flux<ItemCapped> sharedCursor(ItemStreamFilter filter) {
+        AtomicReference<Flux<ItemCapped>> self = new AtomicReference<>();
+        Flux<ItemCapped> cursor = itemReactiveCappedRepository.tailItems(filter, null)
+                .doOnSubscribe(subscription -> log.info("Opening a shared tailable cursor for {}", filter))
+                .doFinally(signal -> filteredCursors.remove(filter, self.get()))
+                .publish()
+                .refCount();
+        self.set(cursor);
+        return cursor;
+    }
+
+    /**
+     * Resume a stream after the last document a client received (Last-Event-ID of server sent events).
+     * In shared mode the documents after lastId are read once (not tailable) and the stream continues with the
+     * shared cursor, so a reconnect does not open a cursor. The shared cursor is subscribed right away and buffered
+     * while the missed documents are read, the documents it sends that were already emitted are skipped (see Overlap).
+     * Otherwise a tailable cursor is opened with _id > lastId.
+     * @param lastId - id of the last document the client received, an invalid id streams like stream()
+     */
+    public Flux<ItemCapped> resumeAfter(String lastId) {
+        return resumeAfter(lastId, ItemStreamFilter.NONE);
+    }
+
+    public Flux<ItemCapped> resumeAfter(String lastId, ItemStreamFilter filter) {
+        return resumeAfter(lastId, filter, null);
+    }
+
+    public Flux<ItemCapped> resumeAfter(String lastId, ItemStreamFilter filter, SlowConsumerPolicy policy) {
+        if (!ObjectId.isValid(lastId)) {
+            return stream(filter, policy);
+        }
+        boolean unfiltered = filter == null || filter.isEmpty();
+        if (!shared) {
+            return guard(unfiltered ? itemReactiveCappedRepository.findItemsByIdGreaterThan(lastId)
+                    : itemReactiveCappedRepository.tailItems(filter, lastId), policy);
+        }
+        Flux<ItemCapped> missed = unfiltered ? itemReactiveCappedRepository.findByIdGreaterThan(lastId)
+                : itemReactiveCappedRepository.findItems(filter, lastId);
+        return Flux.defer(() -> {
+            Overlap overlap = new Overlap(new ObjectId(lastId));
+            return Flux.mergeSequential(missed.map(itemCapped -> Tuples.of(true, itemCapped)),
+                    stream(filter, policy).map(itemCapped -> Tuples.of(false, itemCapped)))
+                    .filter(missedOrLive -> missedOrLive.getT1() ? overlap.missed(missedOrLive.getT2())
+                            : overlap.isNew(missedOrLive.getT2()))
+                    .map(Tuple2::getT2);
+        });
+    }
+
+    /**
+     * The shared cursor sends the documents that were also read as missed documents, and a cursor opened by this
+     * subscriber starts again from the beginning of the capped collection. Those are dropped up to the first live
+     * document that was not emitted and is after lastId, from then on the live documents go through unchanged.
+     * ObjectIds grow with the insertion time but are ordered by machine and process within a second, comparing them
+     * for the whole connection would drop live documents of other processes that a fresh subscriber gets.
+     */
+    private static class Overlap {
+
+        private final ObjectId lastId;
+
+        private Set<String> missedIds = new HashSet<>();
+
+        Overlap(ObjectId lastId) {
+            this.lastId = lastId;
+        }
+
+        boolean missed(ItemCapped itemCapped) {
+            missedIds.add(itemCapped.getId());
+            return true;
+        }
+
+        boolean isNew(ItemCapped itemCapped) {
+            if (missedIds == null) {
+                return true;
+            }
+            if (missedIds.contains(itemCapped.getId()) || new ObjectId(itemCapped.getId()).compareTo(lastId) <= 0) {
+                return false;
+            }
+            missedIds = null;       //end of the overlap
+            return true;
+        }
+    }
+
+    public static ServerSentEvent<ItemCapped> toEvent(ItemCapped itemCapped) {
+        return ServerSentEvent.builder(itemCapped)
+                .id(itemCapped.getId())
+                .event("item")
+                .build();
+    }
+
+    /**
+     * @return filtered cursors open in shared mode
+     */
+    public int filteredCursors() {
+        return filteredCursors.size();
+    }
+
+    /**
+     * @return subscribers of the item stream, in dedicated mode every one of them holds a tailable cursor
+     */
+    public int subscribers() {
+        return subscribers.get();
+    }
+}
@@ -0,0 +1,116 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.model.ItemChangeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Source of the per item stream endpoints (/v1/stream/items/{id}).
+ * All the watched ids of an application instance are served from one shared change stream of the Item collection:
+ * every change is handed to the feed of its id, looked up in a map, so a change costs the same whatever the number
+ * of watched ids and Mongo sees one cursor. The change stream is opened with the first watcher and closed with the
+ * last one, the feed of an id is dropped with its last watcher.
+ * A watcher gets the changes from the moment it subscribes. One that can not keep up is handled by its
+ * SlowConsumerPolicy, by default latest: a watcher only needs the last state of the item.
+ * An error of the change stream ends all the watches, the next watcher opens a new change stream.
+ */
+@Component
+@Slf4j
+public class ItemChangeDemultiplexer {
+
+    private final StreamBackpressure streamBackpressure;
+
+    private final SlowConsumerPolicy defaultPolicy;
+
+    private final ConcurrentMap<String, KeyFeed> feeds = new ConcurrentHashMap<>();
+
+    /**
+     * Emits no element, the changes reach the watchers through their KeyFeed.
+     * It is merged in every watch to keep the change stream open and to pass its errors on.
+     */
+    private final Flux<ItemChangeEvent> changeFeed;
+
+    public ItemChangeDemultiplexer(ItemChangeStream itemChangeStream,
+                                   StreamBackpressure streamBackpressure,
+                                   @Value("${items.watch.slow-consumer-policy:latest}") String defaultPolicy) {
+        this.streamBackpressure = streamBackpressure;
+        this.defaultPolicy = SlowConsumerPolicy.fromParam(defaultPolicy);
+        if (this.defaultPolicy == null) {
+            throw new IllegalArgumentException("Unknown items.watch.slow-consumer-policy " + defaultPolicy);
+        }
+        this.changeFeed = Flux.defer(() -> itemChangeStream.changes(null))
+                .doOnSubscribe(subscription -> log.info("Opening the shared change stream of the watched items"))
+                .doOnCancel(() -> log.info("Closing the shared change stream, no watched items left"))
+                .doOnNext(this::dispatch)
+                .ignoreElements()
+                .flux()
+                .share();
+    }
+
+    /**
+     * @param id - id of the item
+     * @param policy - null for items.watch.slow-consumer-policy
+     */
+    public Flux<ItemChangeEvent> watch(String id, SlowConsumerPolicy policy) {
+        return streamBackpressure.apply(Flux.defer(() -> {
+            KeyFeed feed = feeds.compute(id, (key, existing) -> {
+                KeyFeed keyFeed = existing == null ? new KeyFeed() : existing;
+                keyFeed.subscribers.incrementAndGet();
+                return keyFeed;
+            });
+            return feed.processor
+                    .mergeWith(changeFeed)
+                    .doFinally(signal -> feeds.computeIfPresent(id,
+                            (key, keyFeed) -> keyFeed.subscribers.decrementAndGet() == 0 ? null : keyFeed));
+        }), policy == null ? defaultPolicy : policy, ItemChangeEvent::getId);
+    }
+
+    /**
+     * Called for every change, from the single subscriber of the change stream
+     */
+    void dispatch(ItemChangeEvent change) {
+        KeyFeed feed = change.getId() == null ? null : feeds.get(change.getId());
+        if (feed != null) {
+            feed.sink.next(change);
+        }
+    }
+
+    /**
+     * Ids with at least one watcher
+     */
+    public int keys() {
+        return feeds.size();
+    }
+
+    public int subscribers() {
+        return feeds.values().stream().mapToInt(feed -> feed.subscribers.get()).sum();
+    }
+
+    /**
+     * Watchers of the most watched id
+     */
+    public int maxSubscribersPerKey() {
+        return feeds.values().stream().mapToInt(feed -> feed.subscribers.get()).max().orElse(0);
+    }
+
+    /**
+     * The watchers of one id. The processor does not buffer, every watcher requests unbounded through its
+     * slow consumer policy.
+     */
+    private static class KeyFeed {
+
+        final DirectProcessor<ItemChangeEvent> processor = DirectProcessor.create();
+
+        final FluxSink<ItemChangeEvent> sink = processor.sink();
+
+        final AtomicInteger subscribers = new AtomicInteger();
+    }
+}
@@ -0,0 +1,137 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.ItemChangeEvent;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Live feed of the Item collection, from a Mongo change stream (inserts, updates, replaces and deletes).
+ * Change streams need a replica set (a single node one is enough, see the replicaset profile).
+ * Every event carries the resume token of the change, a client that reconnects with it gets the changes it missed,
+ * as long as they are still in the oplog. The change stream cursor is read only as fast as the client consumes,
+ * there is no buffering in between.
+ */
+@Component
+public class ItemChangeStream {
+
+    private static final Document OPERATION_TYPES = new Document("$match", new Document("operationType",
+            new Document("$in", Arrays.asList("insert", "update", "replace", "delete"))));
+
+    //server error codes of a resume that is not possible
+    private static final int BAD_VALUE = 2;     //eg a _data that is not a resume token
+    private static final int INVALID_RESUME_TOKEN = 260;
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;       //token not found in the oplog, before 4.2
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ItemChangeStream(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * @param resumeToken - resume token of the last change the client got, null for the changes from now on
+     * @throws ResponseStatusException (400) if the resume token was not created by this stream, the stream fails
+     * with 410 Gone when the change of the token is no longer in the oplog
+     */
+    public Flux<ItemChangeEvent> changes(String resumeToken) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .filter(OPERATION_TYPES)
+                .returnFullDocumentOnUpdate();
+        if (resumeToken != null) {
+            options.resumeAfter(decodeResumeToken(resumeToken));
+        }
+        Flux<ItemChangeEvent> changes = mongoOperations.changeStream(mongoOperations.getCollectionName(Item.class),
+                options.build(), Item.class)
+                .map(ItemChangeStream::toChangeEvent);
+        return resumeToken == null ? changes : changes.onErrorMap(ItemChangeStream::resumeError);
+    }
+
+    /**
+     * Mongo checks the token only when the stream is opened
+     */
+    private static Throwable resumeError(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException) {
+                int code = ((MongoServerException) cause).getCode();
+                if (code == CHANGE_STREAM_HISTORY_LOST || code == CHANGE_STREAM_FATAL_ERROR) {
+                    return new ResponseStatusException(HttpStatus.GONE, "The changes after the resume token are no longer available", ex);
+                }
+                if (code == INVALID_RESUME_TOKEN || code == BAD_VALUE) {
+                    return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid resume token", ex);
+                }
+            }
+        }
+        return ex;
+    }
+
+    /**
+     * The resume token is the id of the event, EventSource sends it back in the Last-Event-ID header
+     */
+    public static ServerSentEvent<ItemChangeEvent> toEvent(ItemChangeEvent change) {
+        return ServerSentEvent.builder(change)
+                .id(change.getResumeToken())
+                .event(change.getType())
+                .build();
+    }
+
+    static ItemChangeEvent toChangeEvent(ChangeStreamEvent<Item> event) {
+        OperationType operationType = event.getOperationType();
+        BsonDocument documentKey = event.getRaw().getDocumentKey();
+        return new ItemChangeEvent(operationType == null ? null : operationType.getValue(),
+                documentKey == null ? null : id(documentKey.get("_id")),
+                operationType == OperationType.DELETE ? null : event.getBody(),
+                encodeResumeToken(event.getResumeToken()));
+    }
+
+    private static String id(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        if (id instanceof BsonObjectId) {
+            return ((BsonObjectId) id).getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    /**
+     * The token is opaque to the client, it is the (url safe base64) json of the bson resume token
+     */
+    static String encodeResumeToken(BsonValue resumeToken) {
+        if (resumeToken == null) {
+            return null;
+        }
+        String json = resumeToken.asDocument().toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static BsonDocument decodeResumeToken(String resumeToken) {
+        BsonDocument token;
+        try {
+            token = BsonDocument.parse(new String(Base64.getUrlDecoder().decode(resumeToken), StandardCharsets.UTF_8));
+        } catch (RuntimeException ex) {     //IllegalArgumentException and JsonParseException
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid resume token");
+        }
+        if (!token.containsKey("_data")) {      //any other json document is not a resume token
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid resume token");
+        }
+        return token;
+    }
+}
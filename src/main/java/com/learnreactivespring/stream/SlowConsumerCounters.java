@@ -0,0 +1,29 @@
+package com.learnreactivespring.stream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Elements one subscriber (connection) did not get because it was too slow
+ */
+public class SlowConsumerCounters {
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong conflated = new AtomicLong();
+
+    void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    void conflated() {
+        conflated.incrementAndGet();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getConflated() {
+        return conflated.get();
+    }
+}
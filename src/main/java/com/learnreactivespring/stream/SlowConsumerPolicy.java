@@ -0,0 +1,48 @@
+package com.learnreactivespring.stream;
+
+/**
+ * What a long lived stream does with the elements a subscriber is not ready for (it requested less than was published).
+ * The elements are held per subscriber, so a slow subscriber never slows down the source for the others.
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * Bounded buffer, the subscriber is disconnected with an overflow error when it is full
+     */
+    BUFFER("buffer"),
+    /**
+     * Only the latest element is kept, the older pending ones are dropped
+     */
+    LATEST("latest"),
+    /**
+     * One pending element per key (the item id), a newer version replaces the pending one
+     */
+    CONFLATE("conflate"),
+    /**
+     * Bounded buffer, the oldest pending element is dropped when it is full
+     */
+    DROP_OLDEST("drop-oldest");
+
+    private final String param;
+
+    SlowConsumerPolicy(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /**
+     * @param param - value of the backpressure query parameter or configuration property
+     * @return the matching policy or null if there is no such policy
+     */
+    public static SlowConsumerPolicy fromParam(String param) {
+        for (SlowConsumerPolicy policy : values()) {
+            if (policy.param.equalsIgnoreCase(param)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.learnreactivespring.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Applies a SlowConsumerPolicy to a long lived stream, per subscriber.
+ * The source is requested without bound and whatever the subscriber is not ready for is held here, up to
+ * items.stream.subscriber-buffer-size elements. So a stalled connection costs a bounded number of elements
+ * instead of growing until the heap (or the Netty outbound buffers) are exhausted.
+ * The dropped and conflated elements are counted per connection and logged when it closes.
+ */
+@Component
+@Slf4j
+public class StreamBackpressure {
+
+    private final int bufferSize;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong conflated = new AtomicLong();
+
+    public StreamBackpressure(@Value("${items.stream.subscriber-buffer-size:256}") int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param param - value of the backpressure query parameter
+     * @param defaultPolicy - when there is no parameter
+     */
+    public SlowConsumerPolicy policy(String param, SlowConsumerPolicy defaultPolicy) {
+        if (param == null) {
+            return defaultPolicy;
+        }
+        SlowConsumerPolicy policy = SlowConsumerPolicy.fromParam(param);
+        if (policy == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown backpressure policy " + param);
+        }
+        return policy;
+    }
+
+    /**
+     * @param key - identity of an element for SlowConsumerPolicy.CONFLATE
+     */
+    public <T> Flux<T> apply(Flux<T> source, SlowConsumerPolicy policy, Function<? super T, ?> key) {
+        return Flux.defer(() -> {
+            SlowConsumerCounters counters = new SlowConsumerCounters();
+            Flux<T> guarded;
+            switch (policy) {
+                case LATEST:
+                    guarded = source.onBackpressureBuffer(1, element -> counters.dropped(), BufferOverflowStrategy.DROP_OLDEST);
+                    break;
+                case CONFLATE:
+                    guarded = ConflatingBuffer.conflate(source, key, bufferSize, counters);
+                    break;
+                case DROP_OLDEST:
+                    guarded = source.onBackpressureBuffer(bufferSize, element -> counters.dropped(), BufferOverflowStrategy.DROP_OLDEST);
+                    break;
+                default:
+                    guarded = source.onBackpressureBuffer(bufferSize, element -> counters.dropped());
+            }
+            return guarded.doFinally(signal -> report(policy, counters));
+        });
+    }
+
+    private void report(SlowConsumerPolicy policy, SlowConsumerCounters counters) {
+        if (counters.getDropped() == 0 && counters.getConflated() == 0) {
+            return;
+        }
+        dropped.addAndGet(counters.getDropped());
+        conflated.addAndGet(counters.getConflated());
+        log.warn("Stream of a slow consumer closed ({} policy), {} elements dropped and {} conflated",
+                policy.getParam(), counters.getDropped(), counters.getConflated());
+    }
+
+    /**
+     * @return dropped elements of all the closed connections
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return conflated elements of all the closed connections
+     */
+    public long conflated() {
+        return conflated.get();
+    }
+}
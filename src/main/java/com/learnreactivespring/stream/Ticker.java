@@ -0,0 +1,142 @@
+package com.learnreactivespring.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of /fluxstream-infinite, a tick every ticker.period, the heartbeat of long lived connections.
+ * In shared mode (ticker.shared, the default) one interval per application instance is multicast to all
+ * subscribers: there is one timer task whatever the number of connections, instead of one per connection.
+ * The interval is started by the first subscriber and stopped when the last one leaves. A subscriber that joins
+ * later gets the latest tick right away and then the next ones, so the ticks it sees do not start at 0.
+ * Every subscriber gets a tick at most once and in order, see TickSink.
+ * The subscribers are kept in a concurrent map and not behind replay(1).refCount(): the operators keep their
+ * subscribers in a copy on write array, so a connect or a disconnect costs a copy of all the others
+ * (about 250us with 100k subscribers, see TickerBenchmark.connectDisconnect).
+ * The keys are a sequence, the map is then walked about in subscription order, close to the order the subscribers
+ * were allocated in. Walked in identity hash order a tick to 10k subscribers took 8 times longer (cache misses).
+ * Per subscriber mode gives every subscriber its own interval starting at 0.
+ */
+@Component
+@Slf4j
+public class Ticker {
+
+    private final Duration period;
+
+    private final boolean shared;
+
+    private final Scheduler scheduler;
+
+    private final ConcurrentMap<Long, TickSink> sinks = new ConcurrentHashMap<>();    //by subscription sequence
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Object lock = new Object();
+
+    private Disposable interval;        //guarded by lock, null when nobody is subscribed
+
+    private volatile Long latest;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * @param scheduler - timerScheduler, see SchedulerConfig
+     */
+    public Ticker(@Value("${ticker.period:1s}") Duration period,
+                  @Value("${ticker.shared:true}") boolean shared,
+                  Scheduler scheduler) {
+        this.period = period;
+        this.shared = shared;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Never completes. A subscriber that requests less than a tick per period keeps only the latest tick in shared
+     * mode, in per subscriber mode it gets an overflow error (interval can not slow down), see StreamBackpressure
+     * for the slow subscribers.
+     */
+    public Flux<Long> ticks() {
+        Flux<Long> ticks = shared ? Flux.create(this::join, FluxSink.OverflowStrategy.LATEST)
+                : Flux.interval(period, scheduler);
+        return ticks
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int subscribers() {
+        return subscribers.get();
+    }
+
+    /**
+     * The latest tick is sent after the sink is added, so a tick published in between is not missed.
+     * publish can send the same tick or a newer one to the new sink at the same time, TickSink drops it then.
+     */
+    private void join(FluxSink<Long> sink) {
+        TickSink tickSink = new TickSink(sink);
+        Long key = sequence.incrementAndGet();
+        synchronized (lock) {
+            sinks.put(key, tickSink);
+            if (interval == null) {
+                log.info("Starting the shared ticker, a tick every {}", period);
+                interval = Flux.interval(period, scheduler).subscribe(this::publish);
+            }
+        }
+        sink.onDispose(() -> leave(key));
+        Long tick = latest;
+        if (tick != null) {
+            tickSink.next(tick);
+        }
+    }
+
+    private void leave(Long key) {
+        synchronized (lock) {
+            sinks.remove(key);
+            if (sinks.isEmpty() && interval != null) {
+                log.info("Stopping the shared ticker, no subscribers left");
+                interval.dispose();
+                interval = null;
+                latest = null;
+            }
+        }
+    }
+
+    private void publish(Long tick) {
+        latest = tick;
+        for (TickSink sink : sinks.values()) {
+            sink.next(tick);
+        }
+    }
+
+    /**
+     * Sends a tick only if it is newer than the last one this subscriber got. The check and the send are one step,
+     * the monitor is only contended while the subscriber joins.
+     */
+    private static class TickSink {
+
+        private final FluxSink<Long> sink;
+
+        private long last = -1;     //guarded by this
+
+        TickSink(FluxSink<Long> sink) {
+            this.sink = sink;
+        }
+
+        synchronized void next(long tick) {
+            if (tick > last) {
+                last = tick;
+                sink.next(tick);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.learnreactivespring.cache;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemCacheTest {
+
+    ItemReactiveRepository itemReactiveRepository;
+
+    ItemCache itemCache;
+
+    @BeforeEach
+    public void setUp() {
+        itemReactiveRepository = mock(ItemReactiveRepository.class);
+        itemCache = new ItemCache(itemReactiveRepository, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        when(itemReactiveRepository.findById("ABC")).thenReturn(Mono.just(new Item("ABC", "Beats HeadPhones", 149.99)));
+        when(itemReactiveRepository.findById("DEF")).thenReturn(Mono.empty());
+    }
+
+    @Test
+    public void findById_readThrough() {
+        StepVerifier.create(itemCache.findById("ABC"))
+                .expectNextMatches(item -> item.getPrice() == 149.99)
+                .verifyComplete();
+        StepVerifier.create(itemCache.findById("ABC"))
+                .expectNextMatches(item -> item.getPrice() == 149.99)
+                .verifyComplete();
+
+        verify(itemReactiveRepository, times(1)).findById("ABC");
+        assertEquals(1, itemCache.statistics().getHits());
+        assertEquals(1, itemCache.statistics().getMisses());
+    }
+
+    @Test
+    public void findById_negativeLookupIsCached() {
+        StepVerifier.create(itemCache.findById("DEF")).verifyComplete();
+        StepVerifier.create(itemCache.findById("DEF")).verifyComplete();
+
+        verify(itemReactiveRepository, times(1)).findById("DEF");
+    }
+
+    @Test
+    public void put_replacesCachedItem() {
+        StepVerifier.create(itemCache.findById("DEF")).verifyComplete();
+        itemCache.put(new Item("DEF", "Bose Headphones", 199.99));
+
+        StepVerifier.create(itemCache.findById("DEF"))
+                .expectNextMatches(item -> item.getPrice() == 199.99)
+                .verifyComplete();
+        verify(itemReactiveRepository, times(1)).findById("DEF");
+    }
+
+    @Test
+    public void invalidate_readsAgainFromRepository() {
+        StepVerifier.create(itemCache.findById("ABC")).expectNextCount(1).verifyComplete();
+        itemCache.invalidate("ABC");
+        StepVerifier.create(itemCache.findById("ABC")).expectNextCount(1).verifyComplete();
+        itemCache.invalidateAll(Collections.singletonList("ABC"));
+        StepVerifier.create(itemCache.findById("ABC")).expectNextCount(1).verifyComplete();
+
+        verify(itemReactiveRepository, times(3)).findById("ABC");
+    }
+
+    @Test
+    public void findAllById_readsOnlyTheMissingIds() {
+        when(itemReactiveRepository.findAllById(new HashSet<>(Arrays.asList("ABC", "DEF"))))
+                .thenReturn(Flux.just(new Item("ABC", "Beats HeadPhones", 149.99)));
+
+        StepVerifier.create(itemCache.findAllById(Arrays.asList("ABC", "DEF")))
+                .expectNextMatches(items -> items.size() == 1 && items.get("ABC").getPrice() == 149.99)
+                .verifyComplete();
+        StepVerifier.create(itemCache.findAllById(Arrays.asList("ABC", "DEF")))        //both cached, DEF as unknown
+                .expectNextMatches(items -> items.size() == 1 && items.containsKey("ABC"))
+                .verifyComplete();
+        StepVerifier.create(itemCache.findById("DEF")).verifyComplete();
+
+        verify(itemReactiveRepository, times(1)).findAllById(any(Iterable.class));
+        verify(itemReactiveRepository, never()).findById("DEF");
+    }
+
+    @Test
+    public void findById_concurrentMissesAreCoalesced() {
+        when(itemReactiveRepository.findById("GHI"))
+                .thenReturn(Mono.just(new Item("GHI", "Apple Watch", 349.99)).delayElement(Duration.ofMillis(200)));
+
+        StepVerifier.create(Flux.range(0, 50).flatMap(i -> itemCache.findById("GHI")))
+                .expectNextCount(50)
+                .verifyComplete();
+
+        verify(itemReactiveRepository, times(1)).findById("GHI");
+        assertEquals(49, itemCache.statistics().getCoalesced());
+    }
+}
@@ -0,0 +1,71 @@
+package com.learnreactivespring.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SingleFlightTest {
+
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    AtomicInteger subscriptions = new AtomicInteger();
+
+    private Mono<String> slowCall(String value) {
+        return Mono.just(value)
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .delayElement(Duration.ofMillis(200));
+    }
+
+    @Test
+    public void concurrentCallsShareOneCall() {
+        Flux<String> callers = Flux.range(0, 100)
+                .flatMap(i -> singleFlight.execute("ABC", () -> slowCall("Beats HeadPhones")));
+
+        StepVerifier.create(callers)
+                .expectNextCount(100)
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+        assertEquals(1, singleFlight.calls());
+        assertEquals(99, singleFlight.coalesced());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void completedCallIsNotReused() {
+        StepVerifier.create(singleFlight.execute("ABC", () -> slowCall("Beats HeadPhones")))
+                .expectNext("Beats HeadPhones")
+                .verifyComplete();
+        StepVerifier.create(singleFlight.execute("ABC", () -> slowCall("Bose Headphones")))
+                .expectNext("Bose Headphones")
+                .verifyComplete();
+
+        assertEquals(2, subscriptions.get());
+        assertEquals(0, singleFlight.coalesced());
+    }
+
+    @Test
+    public void failedCallIsNotReused() {
+        StepVerifier.create(singleFlight.execute("ABC", () -> Mono.error(new RuntimeException("Mongo is down"))))
+                .verifyErrorMessage("Mongo is down");
+        StepVerifier.create(singleFlight.execute("ABC", () -> slowCall("Beats HeadPhones")))
+                .expectNext("Beats HeadPhones")
+                .verifyComplete();
+    }
+
+    @Test
+    public void cancelledCallerDoesNotCancelTheOthers() {
+        Mono<String> call = singleFlight.execute("ABC", () -> slowCall("Beats HeadPhones"));
+        call.subscribe().dispose();
+
+        StepVerifier.create(singleFlight.execute("ABC", () -> slowCall("Bose Headphones")))
+                .expectNext("Beats HeadPhones")
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+    }
+}
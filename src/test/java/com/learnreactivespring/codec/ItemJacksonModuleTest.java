@@ -0,0 +1,97 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemCapped;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The hand written serializers have to read and write what the reflective ones did
+ */
+
+public class ItemJacksonModuleTest {
+
+    ObjectMapper reflectiveMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ItemJacksonModule()).build();
+
+    @Test
+    public void writeItem_sameAsReflective() throws Exception {
+        Item item = new Item("ABC", "Beats HeadPhones", 149.99, 2L);
+        Item projection = new Item("ABC", null, 149.99);
+
+        assertEquals(reflectiveMapper.writeValueAsString(item), objectMapper.writeValueAsString(item));
+        assertEquals(reflectiveMapper.writeValueAsString(projection), objectMapper.writeValueAsString(projection));
+    }
+
+    /**
+     * Spring Boot writes dates as ISO-8601 strings (WRITE_DATES_AS_TIMESTAMPS is off)
+     */
+    @Test
+    public void writeItem_lastModified_sameAsSpringBoot() throws Exception {
+        ObjectMapper bootMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        Item item = new Item("ABC", "Beats HeadPhones", 149.99, 2L, Instant.parse("2020-01-13T10:15:30.123Z"));
+
+        assertEquals(bootMapper.writeValueAsString(item), objectMapper.writeValueAsString(item));
+        assertEquals(item, objectMapper.readValue(bootMapper.writeValueAsString(item), Item.class));
+    }
+
+    @Test
+    public void writeItemCapped_sameAsReflective() throws Exception {
+        ItemCapped item = new ItemCapped("ABC", "Beats HeadPhones", null);
+
+        assertEquals(reflectiveMapper.writeValueAsString(item), objectMapper.writeValueAsString(item));
+    }
+
+    @Test
+    public void readItem() throws Exception {
+        String json = "{\"id\":\"ABC\",\"description\":\"Beats HeadPhones\",\"price\":149,\"version\":2," +
+                "\"unknown\":{\"nested\":[1,2]}}";
+
+        assertEquals(new Item("ABC", "Beats HeadPhones", 149.0, 2L), objectMapper.readValue(json, Item.class));
+        assertEquals(reflectiveMapper.readValue(json, Item.class), objectMapper.readValue(json, Item.class));
+    }
+
+    @Test
+    public void readItem_priceInAString() throws Exception {
+        Item item = objectMapper.readValue("{\"description\":\"LG TV\",\"price\":\"329.99\"}", Item.class);
+
+        assertEquals(329.99, item.getPrice());
+        assertNull(item.getId());
+    }
+
+    @Test
+    public void readItemCapped() throws Exception {
+        ItemCapped item = objectMapper.readValue("{\"id\":\"ABC\",\"description\":null,\"price\":149.99}", ItemCapped.class);
+
+        assertEquals(new ItemCapped("ABC", null, 149.99), item);
+    }
+
+    @Test
+    public void readItem_invalidValues() {
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"description\":{\"a\":1},\"price\":1.0}", Item.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"id\":[\"ABC\"],\"price\":1.0}", Item.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"id\":\"ABC\",\"version\":\"abc\"}", Item.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"id\":\"ABC\",\"version\":1.5}", Item.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("{\"id\":{},\"price\":1.0}", ItemCapped.class));
+        assertThrows(JsonMappingException.class, () -> reflectiveMapper.readValue("{\"description\":{\"a\":1},\"price\":1.0}", Item.class));
+    }
+
+    @Test
+    public void readItem_smile() throws Exception {
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().modulesToInstall(new ItemJacksonModule()).build();
+        Item item = new Item("ABC", "Beats HeadPhones", 149.99, 2L, Instant.ofEpochMilli(1578910530123L));
+
+        assertEquals(item, smileMapper.readValue(smileMapper.writeValueAsBytes(item), Item.class));
+    }
+}
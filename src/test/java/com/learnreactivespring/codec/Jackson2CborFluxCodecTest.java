@@ -0,0 +1,64 @@
+package com.learnreactivespring.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.learnreactivespring.document.Item;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class Jackson2CborFluxCodecTest {
+
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    Jackson2CborFluxEncoder encoder = new Jackson2CborFluxEncoder(cborMapper);
+
+    Jackson2CborFluxDecoder decoder = new Jackson2CborFluxDecoder(cborMapper);
+
+    ResolvableType itemType = ResolvableType.forClass(Item.class);
+
+    Flux<Item> items = Flux.just(new Item("ABC", "Samsung TV", 400.0), new Item("DEF", "LG TV", 420.0));
+
+    @Test
+    public void fluxIsOneCborArray() {
+        List<DataBuffer> buffers = encoder.encode(items, new DefaultDataBufferFactory(), itemType,
+                CodecConfig.APPLICATION_CBOR, null)
+                .collectList()
+                .block();
+        assertEquals(4, buffers.size());        //start of the indefinite-length array, the items and the break
+
+        StepVerifier.create(decoder.decode(Flux.fromIterable(buffers), itemType, CodecConfig.APPLICATION_CBOR, null))
+                .expectNext(new Item("ABC", "Samsung TV", 400.0))
+                .expectNext(new Item("DEF", "LG TV", 420.0))
+                .verifyComplete();
+    }
+
+    /**
+     * The array is written while the items come, nothing waits for the end of the Flux
+     */
+    @Test
+    public void cborArrayIsStreamed() {
+        StepVerifier.create(encoder.encode(items.concatWith(Flux.never()), new DefaultDataBufferFactory(), itemType,
+                CodecConfig.APPLICATION_CBOR, null))
+                .expectNextMatches(buffer -> buffer.readableByteCount() == 1 && buffer.getByte(0) == (byte) 0x9F)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void cborSequenceIsOneBufferPerItem() {
+        StepVerifier.create(encoder.encode(items, new DefaultDataBufferFactory(), itemType,
+                CodecConfig.APPLICATION_CBOR_SEQ, null))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+}
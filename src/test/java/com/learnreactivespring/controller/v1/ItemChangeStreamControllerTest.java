@@ -0,0 +1,109 @@
+package com.learnreactivespring.controller.v1;
+
+import com.learnreactivespring.constants.ItemConstants;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.ItemChangeEvent;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+/**
+ * Change streams need a replica set, the embedded Mongo of the test profile is a standalone server.
+ * Start a local single node replica set (mongod --replSet rs0, then rs.initiate()) and run
+ * mvn test -Dtest=ItemChangeStreamControllerTest -Dmongodb.replicaset=true
+ */
+@SpringBootTest
+@DirtiesContext
+@AutoConfigureWebTestClient
+@ActiveProfiles({"test", "replicaset"})
+@EnabledIfSystemProperty(named = "mongodb.replicaset", matches = "true")
+public class ItemChangeStreamControllerTest {
+
+    @Autowired
+    ItemReactiveRepository itemReactiveRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setUp() {
+        itemReactiveRepository.deleteAll().block();
+    }
+
+    /**
+     * The changes are made once the stream is open, the change stream only sees what happens after
+     */
+    private Mono<Void> changeItems() {
+        return Mono.delay(Duration.ofSeconds(1))
+                .then(itemReactiveRepository.save(new Item("ABC", "Beats HeadPhones", 149.99)))
+                .flatMap(item -> itemReactiveRepository.updateItem("ABC", new Item(null, null, 129.99)))
+                .then(itemReactiveRepository.deleteById("ABC"));
+    }
+
+    @Test
+    public void testItemChanges() {
+        Flux<ItemChangeEvent> changes = webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "/changes")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ItemChangeEvent.class)
+                .getResponseBody()
+                .take(3);
+
+        StepVerifier.create(changes.doOnSubscribe(subscription -> changeItems().subscribe()))
+                .expectNextMatches(change -> change.getType().equals("insert") && change.getItem().getPrice() == 149.99)
+                .expectNextMatches(change -> change.getType().equals("update") && change.getItem().getPrice() == 129.99)
+                .expectNextMatches(change -> change.getType().equals("delete") && change.getId().equals("ABC"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testItemChangesResumeAfter() {
+        List<ItemChangeEvent> changes = webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "/changes")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .returnResult(ItemChangeEvent.class)
+                .getResponseBody()
+                .doOnSubscribe(subscription -> changeItems().subscribe())
+                .take(3)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        Flux<ItemChangeEvent> resumed = webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "/changes?resumeAfter={token}", changes.get(0).getResumeToken())
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ItemChangeEvent.class)
+                .getResponseBody()
+                .take(2);
+
+        StepVerifier.create(resumed.map(ItemChangeEvent::getType))
+                .expectNext("update", "delete")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testItemChangesInvalidResumeToken() {
+        webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "/changes?resumeAfter=invalid")
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -1,12 +1,27 @@
 package com.learnreactivespring.controller.v1;
 
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.codec.CodecConfig;
 import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.BulkBatchResult;
+import com.learnreactivespring.model.ItemDelta;
+import com.learnreactivespring.model.ItemPage;
+import com.learnreactivespring.model.ItemStatistics;
+import com.learnreactivespring.model.MultiGetRequest;
+import com.learnreactivespring.model.MultiGetEntry;
+import com.learnreactivespring.repository.ItemLastModifiedCallback;
 import com.learnreactivespring.repository.ItemReactiveRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
@@ -15,11 +30,20 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.learnreactivespring.constants.ItemConstants.ITEM_END_POINT_V1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @SpringBootTest
 @DirtiesContext
@@ -36,8 +60,18 @@ public class ItemControllerTest {
     @Autowired
     ItemReactiveRepository itemReactiveRepository;
 
+    @Autowired
+    ItemCache itemCache;
+
+    @Autowired
+    ReactiveMongoOperations mongoOperations;
+
+    @Value("${items.sync.settle}")
+    Duration syncSettle;
+
     @BeforeEach
     public void setUp() {
+        itemCache.invalidateAll();      //the data is reset through the repository, bypassing the cache
         itemReactiveRepository.deleteAll()
                 .thenMany(Flux.fromIterable(data()))
                 .flatMap(itemReactiveRepository::save)
@@ -97,6 +131,60 @@ public class ItemControllerTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void getItemsPage() {
+        ItemPage firstPage = webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?limit=3"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ItemPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(3, firstPage.getItems().size());
+        assertEquals("ABC", firstPage.getItems().get(0).getId());    //string ids sort before generated ObjectIds
+        assertNotNull(firstPage.getNext());
+
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?limit=3&after={after}"), firstPage.getNext())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void getItemsPage_sortByPrice() {
+        ItemPage firstPage = webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?limit=2&sort=price"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ItemPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(149.99, firstPage.getItems().get(0).getPrice());
+        assertEquals(329.99, firstPage.getItems().get(1).getPrice());
+
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?limit=2&after={after}"), firstPage.getNext())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].price").isEqualTo(349.99)
+                .jsonPath("$.items[1].price").isEqualTo(399.99)
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void getItemsPage_invalidCursor() {
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?limit=2&after=not-a-cursor"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void getOneItem() {
         webTestClient.get()
@@ -107,6 +195,40 @@ public class ItemControllerTest {
                 .jsonPath("$.price", 149.99);
     }
 
+    @Test
+    public void getOneItem_projection() {
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("/{id}?fields=price"), "ABC")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo("ABC")
+                .jsonPath("$.price").isEqualTo(149.99)
+                .jsonPath("$.description").doesNotExist();
+    }
+
+    @Test
+    public void getAllItems_projection() {
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?fields=id,price"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Item.class)
+                .hasSize(4)
+                .consumeWith(response -> response.getResponseBody().forEach(item -> {
+                    assertNotNull(item.getPrice());
+                    assertNull(item.getDescription());
+                }));
+    }
+
+    @Test
+    public void getAllItems_unknownField() {
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("?fields=id,weight"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void getOneItem_notFound() {
         webTestClient.get()
@@ -130,6 +252,104 @@ public class ItemControllerTest {
                 .jsonPath("$.price").isEqualTo(999.99);
     }
 
+    @Test
+    public void createItem_existingId() {
+        webTestClient.post()
+                .uri(ITEM_END_POINT_V1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Item("ABC", "Beats HeadPhones", 99.99)), Item.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.price").isEqualTo(149.99);      //not replaced
+    }
+
+    @Test
+    public void createItem_versionIsIgnored() {
+        webTestClient.post()
+                .uri(ITEM_END_POINT_V1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Item(null, "Iphone X", 999.99, 7L)), Item.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(0);
+    }
+
+    @Test
+    public void createItems() {
+        List<Item> items = Arrays.asList(
+                new Item(null, "Iphone X", 999.99),
+                new Item(null, "Iphone 11", 1099.99),
+                new Item(null, "Pixel 4", 799.99)
+        );
+        webTestClient.post()
+                .uri(ITEM_END_POINT_V1.concat("/bulk?batchSize=2"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.fromIterable(items), Item.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkBatchResult.class)
+                .hasSize(2)
+                .consumeWith(response -> {
+                    List<BulkBatchResult> batches = response.getResponseBody();
+                    assertEquals(2, batches.get(0).getInserted());
+                    assertEquals(1, batches.get(1).getInserted());
+                });
+
+        StepVerifier.create(itemReactiveRepository.findAll())
+                .expectNextCount(7)
+                .verifyComplete();
+    }
+
+    @Test
+    public void createItems_duplicateId() {
+        Item item = new Item("ABC", "Beats HeadPhones", 149.99);
+        webTestClient.post()
+                .uri(ITEM_END_POINT_V1.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.just(item), Item.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].inserted").isEqualTo(0)
+                .jsonPath("$[0].error").isNotEmpty();
+    }
+
+    @Test
+    public void createItems_invalidBatchSize() {
+        webTestClient.post()
+                .uri(ITEM_END_POINT_V1.concat("/bulk?batchSize=0"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.just(new Item(null, "Iphone X", 999.99)), Item.class)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void ingestItems() {
+        String ndjson = "{\"description\":\"Iphone X\",\"price\":999.99}\n"
+                + "{\"description\":\"Iphone 11\",\"price\":1099.99}\n"
+                + "{\"description\":\"Pixel 4\",\"price\":799.99}\n";
+        Flux<BulkBatchResult> batches = webTestClient.post()
+                .uri(ITEM_END_POINT_V1.concat("/ingest?batchSize=2"))
+                .contentType(CodecConfig.APPLICATION_NDJSON)
+                .bodyValue(ndjson)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BulkBatchResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(batches)
+                .expectNextMatches(batch -> batch.getBatch() == 0 && batch.getInserted() == 2)
+                .expectNextMatches(batch -> batch.getBatch() == 1 && batch.getInserted() == 1)
+                .verifyComplete();
+    }
+
     @Test
     public void deleteItem() {
         webTestClient.delete()
@@ -155,6 +375,69 @@ public class ItemControllerTest {
                 .jsonPath("$.price", newPrice);
     }
 
+    @Test
+    public void getOneItem_notModified() {
+        String etag = webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Item.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(etag);
+
+        webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void updateItem_ifMatch() {
+        String etag = webTestClient.get()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .exchange()
+                .returnResult(Item.class)
+                .getResponseHeaders()
+                .getETag();
+
+        Item item = new Item(null, "Beats HeadPhones", 129.99);
+        String newETag = webTestClient.put()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .body(Mono.just(item), Item.class)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Item.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotEquals(etag, newETag);
+
+        webTestClient.put()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)     //stale
+                .body(Mono.just(item), Item.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    public void deleteItem_ifMatchMismatch() {
+        webTestClient.delete()
+                .uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .header(HttpHeaders.IF_MATCH, "\"42\"")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        StepVerifier.create(itemReactiveRepository.findById("ABC"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
     @Test
     public void updateItem_notFound() {
         double newPrice = 129.99;
@@ -177,4 +460,212 @@ public class ItemControllerTest {
                 .expectBody(String.class)
                 .isEqualTo("RuntimeException occurred.");
     }
+
+    @Test
+    public void getAllItems_cbor() {
+        webTestClient.get().uri(ITEM_END_POINT_V1)
+                .accept(CodecConfig.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CodecConfig.APPLICATION_CBOR)
+                .expectBodyList(Item.class)
+                .hasSize(4);
+    }
+
+    @Test
+    public void getOneItem_smile() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .accept(CodecConfig.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CodecConfig.APPLICATION_SMILE)
+                .expectBody(Item.class)
+                .value(item -> assertEquals(149.99, item.getPrice()));
+    }
+
+    @Test
+    public void getItemsById_inRequestOrder() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?ids={ids}"), "XYZ,ABC")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MultiGetEntry.class)
+                .value(entries -> {
+                    assertEquals(2, entries.size());
+                    assertEquals("XYZ", entries.get(0).getId());
+                    assertFalse(entries.get(0).isFound());
+                    assertNull(entries.get(0).getItem());
+                    assertEquals("ABC", entries.get(1).getId());
+                    assertEquals(149.99, entries.get(1).getItem().getPrice());
+                });
+    }
+
+    /**
+     * Mongo stores an ObjectId, the upper case hex of the request is the same id
+     */
+    @Test
+    public void getItemsById_mixedCaseObjectId() {
+        itemReactiveRepository.save(new Item("5e1c9a2b8f3d4e6a7b8c9d0e", "Pixel 4", 399.99)).block();
+        String mixedCase = "5E1C9A2B8F3D4E6A7b8c9d0e";
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?ids={ids}&fields=price"), mixedCase)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MultiGetEntry.class)
+                .value(entries -> {
+                    assertEquals(1, entries.size());
+                    assertTrue(entries.get(0).isFound());
+                    assertEquals(399.99, entries.get(0).getItem().getPrice());
+                });
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?ids={ids}"), mixedCase)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MultiGetEntry.class)
+                .value(entries -> assertTrue(entries.get(0).isFound()));
+    }
+
+    @Test
+    public void getItemsById_winsOverLimitAndSince() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?ids={ids}&limit=5&since=0"), "ABC")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MultiGetEntry.class)
+                .value(entries -> {
+                    assertEquals(1, entries.size());
+                    assertEquals("ABC", entries.get(0).getId());
+                });
+    }
+
+    @Test
+    public void getItemsModifiedSince_updatesAndDeletesInOrder() throws InterruptedException {
+        Thread.sleep(5);     //the items of setUp are written before since, lastModified is in milliseconds
+        Instant since = Instant.now();
+        webTestClient.put().uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Item(null, null, 129.99)), Item.class)
+                .exchange()
+                .expectStatus().isOk();
+        String deletedId = itemReactiveRepository.findByDescription("LG TV").block().getId();
+        webTestClient.delete().uri(ITEM_END_POINT_V1.concat("/{id}"), deletedId)
+                .exchange()
+                .expectStatus().isOk();
+        Thread.sleep(syncSettle.toMillis() + 5);     //the changes are returned once they are items.sync.settle old
+
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?since={since}"), since.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ItemDelta.class)
+                .value(deltas -> {
+                    assertEquals(2, deltas.size());
+                    assertEquals("ABC", deltas.get(0).getId());
+                    assertEquals(129.99, deltas.get(0).getItem().getPrice());
+                    assertEquals(deletedId, deltas.get(1).getId());
+                    assertTrue(deltas.get(1).isDeleted());
+                    assertNull(deltas.get(1).getItem());
+                    assertFalse(deltas.get(1).getLastModified().isBefore(deltas.get(0).getLastModified()));
+                });
+    }
+
+    /**
+     * A write that took its lastModified before a newer write was read commits late (a bulk batch in flight, another
+     * instance). The newer write is held back by the settle window, so the next since of the client is not past
+     * the late one.
+     */
+    @Test
+    public void getItemsModifiedSince_lateCommitIsNotSkipped() throws InterruptedException {
+        Thread.sleep(5);     //the items of setUp are written before since, lastModified is in milliseconds
+        Instant since = Instant.now();
+        Instant lateLastModified = ItemLastModifiedCallback.now();      //taken, the write is not committed yet
+        Thread.sleep(5);
+        webTestClient.put().uri(ITEM_END_POINT_V1.concat("/{id}"), "ABC")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Item(null, null, 129.99)), Item.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?since={since}"), since.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ItemDelta.class)
+                .hasSize(0);        //the newer write is not settled, since stays where it is
+
+        String lateId = itemReactiveRepository.findByDescription("LG TV").block().getId();
+        mongoOperations.updateFirst(new Query(where("id").is(lateId)),
+                new Update().set("price", 299.99).set("lastModified", lateLastModified), Item.class).block();
+        Thread.sleep(syncSettle.toMillis() + 5);
+
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?since={since}"), since.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ItemDelta.class)
+                .value(deltas -> {
+                    assertEquals(2, deltas.size());
+                    assertEquals(lateId, deltas.get(0).getId());
+                    assertEquals("ABC", deltas.get(1).getId());
+                });
+    }
+
+    @Test
+    public void getItemsModifiedSince_invalidSince() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("?since={since}"), "yesterday")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void multiGetItems() {
+        webTestClient.post().uri(ITEM_END_POINT_V1.concat("/_mget"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new MultiGetRequest(Arrays.asList("ABC", "XYZ"))), MultiGetRequest.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MultiGetEntry.class)
+                .value(entries -> {
+                    assertEquals(2, entries.size());
+                    assertTrue(entries.get(0).isFound());
+                    assertFalse(entries.get(1).isFound());
+                });
+    }
+
+    @Test
+    public void multiGetItems_noIds() {
+        webTestClient.post().uri(ITEM_END_POINT_V1.concat("/_mget"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new MultiGetRequest(Collections.emptyList())), MultiGetRequest.class)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getItemStatistics() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("/stats?boundaries={boundaries}"), "0,200,350")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ItemStatistics.class)
+                .value(statistics -> {
+                    assertEquals(4, statistics.getCount());
+                    assertEquals(149.99, statistics.getMinPrice());
+                    assertEquals(399.99, statistics.getMaxPrice());
+                    assertEquals(2, statistics.getHistogram().size());
+                    assertEquals(1, statistics.getHistogram().get(0).getCount());
+                    assertEquals(2, statistics.getHistogram().get(1).getCount());
+                    assertEquals(1, statistics.getOutOfRange());
+                });
+    }
+
+    @Test
+    public void getItemStatistics_approximate() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("/stats?approximate=true"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(4)
+                .jsonPath("$.approximate").isEqualTo(true)
+                .jsonPath("$.histogram").doesNotExist();
+    }
+
+    @Test
+    public void getItemStatistics_invalidBoundaries() {
+        webTestClient.get().uri(ITEM_END_POINT_V1.concat("/stats?boundaries={boundaries}"), "300,100")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
 }
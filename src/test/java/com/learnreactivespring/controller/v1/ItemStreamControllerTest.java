@@ -8,8 +8,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.mongodb.core.CollectionOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -17,6 +20,9 @@ import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 @DirtiesContext
@@ -64,4 +70,51 @@ public class ItemStreamControllerTest {
                 .verify();
     }
 
+    /**
+     * The items have the prices 100.0 to 104.0, the cursor query returns only the last two
+     */
+    @Test
+    public void testStreamFilteredItems() {
+        Flux<ItemCapped> itemCapped = webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "?minPrice=103&descriptionPrefix=Random")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ItemCapped.class)
+                .getResponseBody()
+                .take(2);
+
+        StepVerifier.create(itemCapped)
+                .expectNextMatches(item -> item.getPrice() == 103.0)
+                .expectNextMatches(item -> item.getPrice() == 104.0)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testEventStreamResumesAfterLastEventId() {
+        List<ServerSentEvent<ItemCapped>> events = eventStream(null)
+                .take(5)
+                .collectList()
+                .block();
+        assertEquals(5, events.size());
+
+        StepVerifier.create(eventStream(events.get(2).id()).take(2))
+                .expectNextMatches(event -> event.id().equals(events.get(3).id()))
+                .expectNextMatches(event -> event.id().equals(events.get(4).id()))
+                .verifyComplete();
+    }
+
+    private Flux<ServerSentEvent<ItemCapped>> eventStream(String lastEventId) {
+        return webTestClient.get()
+                .uri(ItemConstants.ITEM_STREAM_END_POINT_V1 + "/sse")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    if (lastEventId != null) {
+                        headers.set("Last-Event-ID", lastEventId);
+                    }
+                })
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<ItemCapped>>() {})
+                .getResponseBody();
+    }
 }
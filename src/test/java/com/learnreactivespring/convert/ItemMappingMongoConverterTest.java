@@ -0,0 +1,93 @@
+package com.learnreactivespring.convert;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.document.ItemCapped;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The hand written mapping has to write the documents the mapping converter wrote
+ */
+public class ItemMappingMongoConverterTest {
+
+    MappingMongoConverter mappingConverter;
+
+    MappingMongoConverter itemConverter;
+
+    @BeforeEach
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        mappingConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        mappingConverter.afterPropertiesSet();
+        itemConverter = new ItemMappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        itemConverter.afterPropertiesSet();
+    }
+
+    @Test
+    public void writeItem_sameDocumentAsMappingConverter() {
+        Item item = new Item(new ObjectId().toHexString(), "Samsung TV", 399.99, 3L, Instant.ofEpochMilli(1578910530123L));
+
+        Document expected = new Document();
+        mappingConverter.write(item, expected);
+        expected.remove("_class");
+        Document document = new Document();
+        itemConverter.write(item, document);
+
+        assertEquals(expected, document);
+    }
+
+    @Test
+    public void writeItemCapped_sameDocumentAsMappingConverter() {
+        ItemCapped item = new ItemCapped("ABC", "Beats HeadPhones", 149.99);
+
+        Document expected = new Document();
+        mappingConverter.write(item, expected);
+        expected.remove("_class");
+        Document document = new Document();
+        itemConverter.write(item, document);
+
+        assertEquals(expected, document);
+    }
+
+    @Test
+    public void writeNewItem_withoutId() {
+        Document document = new Document();
+        itemConverter.write(new Item(null, "LG TV", 329.99), document);
+
+        assertFalse(document.containsKey("_id"));
+        assertFalse(document.containsKey("version"));
+    }
+
+    @Test
+    public void readItem() {
+        ObjectId id = new ObjectId();
+        Document document = new Document("_id", id).append("description", "Apple Watch").append("price", 349)
+                .append("version", 2).append("lastModified", new Date(1578910530123L)).append("_class", Item.class.getName());
+
+        assertEquals(new Item(id.toHexString(), "Apple Watch", 349.0, 2L, Instant.ofEpochMilli(1578910530123L)),
+                itemConverter.read(Item.class, document));
+        assertEquals(mappingConverter.read(Item.class, document), itemConverter.read(Item.class, document));
+    }
+
+    @Test
+    public void readProjection() {
+        Item item = itemConverter.read(Item.class, new Document("_id", "ABC").append("price", 149.99));
+
+        assertEquals("ABC", item.getId());
+        assertNull(item.getDescription());
+        assertNull(item.getVersion());
+    }
+}
@@ -0,0 +1,54 @@
+package com.learnreactivespring.metrics;
+
+import com.learnreactivespring.document.ItemCapped;
+import com.learnreactivespring.repository.ItemReactiveCappedRepository;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RepositoryMetricsInterceptorTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void setUp() {
+        Metrics.addRegistry(registry);      //metrics() of Reactor records to the global registry
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    public void repositoryFluxIsTimed() {
+        ItemReactiveCappedRepository target = mock(ItemReactiveCappedRepository.class);
+        when(target.findByIdGreaterThan("1")).thenReturn(Flux.just(new ItemCapped("2", "Random item 2", 102.0)));
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new RepositoryMetricsInterceptor("ItemReactiveCappedRepository"));
+        ItemReactiveCappedRepository repository = (ItemReactiveCappedRepository) proxyFactory.getProxy();
+
+        StepVerifier.create(repository.findByIdGreaterThan("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Timer timer = registry.find("reactor.flow.duration")
+                .tag("flow", RepositoryMetricsInterceptor.FLOW_NAME)
+                .tag("repository", "ItemReactiveCappedRepository")
+                .tag("method", "findByIdGreaterThan")
+                .timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+}
@@ -1,6 +1,8 @@
 package com.learnreactivespring.repository;
 
 import com.learnreactivespring.document.Item;
+import com.learnreactivespring.initialize.ItemIndexInitializer;
+import com.learnreactivespring.model.QueryPlan;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -17,8 +19,14 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * ONLY FOR TESTING A REAL (NOT-EMBEDDED MONGODB)
@@ -35,6 +43,12 @@ public class ItemReactiveRepositoryTest {
     @Autowired
     ItemReactiveRepository itemReactiveRepository;
 
+    @Autowired
+    ItemIndexInitializer itemIndexInitializer;
+
+    @Autowired
+    QueryPlanVerifier queryPlanVerifier;
+
     //Id as null and the id will be created from the databse once inserted
     List<Item> itemList = Arrays.asList(
             new Item(null, "Samsung TV", 400.0),
@@ -109,6 +123,42 @@ public class ItemReactiveRepositoryTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void updateItem_findAndModify() {
+        StepVerifier.create(itemReactiveRepository.updateItem("ABC", new Item(null, null, 129.99)))
+                .expectSubscription()
+                .expectNextMatches(item -> item.getPrice() == 129.99 && "Bose Headphones".equals(item.getDescription()))
+                .verifyComplete();
+
+        StepVerifier.create(itemReactiveRepository.updateItem("DEF", new Item(null, null, 129.99)))
+                .expectSubscription()
+                .verifyComplete();
+    }
+
+    /**
+     * Half of the concurrent updates set only the price and the other half only the description.
+     * With a read-modify-write, an update can store the stale value of the field it did not change.
+     * With findAndModify/$set, the last value of each field has to come from an update of that field.
+     */
+    @Test
+    public void updateItem_concurrentUpdatesAreNotLost() {
+        int updates = 100;
+        Flux<Item> concurrentUpdates = Flux.range(0, updates)
+                .flatMap(i -> i % 2 == 0
+                        ? itemReactiveRepository.updateItem("ABC", new Item(null, null, 1000.0 + i))
+                        : itemReactiveRepository.updateItem("ABC", new Item(null, "Bose Headphones " + i, null)),
+                        updates);
+
+        StepVerifier.create(concurrentUpdates)
+                .expectNextCount(updates)
+                .verifyComplete();
+
+        StepVerifier.create(itemReactiveRepository.findById("ABC"))
+                .expectNextMatches(item -> item.getPrice() >= 1000.0
+                        && item.getDescription().startsWith("Bose Headphones "))
+                .verifyComplete();
+    }
+
     @Test
     public void deleteItemById() {
         Mono<Object> deletedItem = itemReactiveRepository.findById("ABC")      //gives back the Mono<Item>
@@ -140,4 +190,57 @@ public class ItemReactiveRepositoryTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void lastModified_setOnEveryWrite() {
+        Instant before = ItemLastModifiedCallback.now();
+
+        Item saved = itemReactiveRepository.save(new Item(null, "Google Home Mini", 30.00)).block();
+        assertFalse(saved.getLastModified().isBefore(before));
+        StepVerifier.create(itemReactiveRepository.findById(saved.getId()))
+                .expectNextMatches(item -> saved.getLastModified().equals(item.getLastModified()))
+                .verifyComplete();
+
+        StepVerifier.create(itemReactiveRepository.updateItem(saved.getId(), new Item(null, null, 35.00)))
+                .expectNextMatches(item -> !item.getLastModified().isBefore(saved.getLastModified()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void findModifiedSince_andTheTombstonesOfTheDeletes() throws InterruptedException {
+        Thread.sleep(5);     //the items of setUp are written before since, lastModified is in milliseconds
+        Instant since = ItemLastModifiedCallback.now();
+
+        Mono<Boolean> changes = itemReactiveRepository.updateItem("ABC", new Item(null, null, 129.99))
+                .then(itemReactiveRepository.findByDescription("LG TV"))
+                .flatMap(item -> itemReactiveRepository.deleteItem(item.getId(), null));
+        StepVerifier.create(changes)
+                .expectNext(true)
+                .verifyComplete();
+
+        Instant until = ItemLastModifiedCallback.now();
+        StepVerifier.create(itemReactiveRepository.findModifiedSince(since, until))
+                .expectNextMatches(item -> "ABC".equals(item.getId()))
+                .verifyComplete();
+        StepVerifier.create(itemReactiveRepository.findDeletedSince(since, until))
+                .expectNextMatches(tombstone -> !tombstone.getDeletedAt().isBefore(since))
+                .verifyComplete();
+    }
+
+    @Test
+    public void queriesUseAnIndex() {
+        Mono<List<QueryPlan>> plans = itemIndexInitializer.ensureIndexes()
+                .thenMany(queryPlanVerifier.verify())
+                .collectList();
+
+        StepVerifier.create(plans)
+                .assertNext(queryPlans -> {
+                    Set<String> explained = queryPlans.stream()
+                            .map(plan -> QueryPlanVerifier.methodName(plan.getQuery()))
+                            .collect(Collectors.toSet());
+                    QueryPlanVerifier.queryMethods().forEach(method ->
+                            assertTrue(explained.contains(method), "No query plan for " + method));
+                    queryPlans.forEach(plan -> assertFalse(plan.isCollectionScan(), plan.getQuery() + " is a collection scan"));
+                })
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,88 @@
+package com.learnreactivespring.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashedWheelSchedulerTest {
+
+    HashedWheelScheduler scheduler = new HashedWheelScheduler(Duration.ofMillis(1), 64, Schedulers.parallel());
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    public void delay_runsOnTheDispatcher() {
+        StepVerifier.create(Mono.delay(Duration.ofMillis(20), scheduler).map(tick -> Thread.currentThread().getName()))
+                .expectNextMatches(thread -> thread.startsWith("parallel"))
+                .verifyComplete();
+    }
+
+    @Test
+    public void delayElements_inOrder() {
+        StepVerifier.create(Flux.just(1, 2, 3, 4).delayElements(Duration.ofMillis(10), scheduler))
+                .expectNext(1, 2, 3, 4)
+                .verifyComplete();
+    }
+
+    @Test
+    public void interval() {
+        StepVerifier.create(Flux.interval(Duration.ofMillis(10), scheduler).take(5))
+                .expectNext(0L, 1L, 2L, 3L, 4L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void disposedDelay_doesNotRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Disposable delay = scheduler.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        delay.dispose();
+
+        Thread.sleep(100);
+        assertTrue(delay.isDisposed());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void disposedWorker_cancelsItsTasks() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch firstRun = new CountDownLatch(1);
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(runs::incrementAndGet, 200, TimeUnit.MILLISECONDS);
+        worker.schedulePeriodically(firstRun::countDown, 0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(firstRun.await(1, TimeUnit.SECONDS));
+
+        worker.dispose();
+        Thread.sleep(300);
+        assertEquals(0, runs.get());
+        assertTrue(worker.isDisposed());
+        assertEquals(0, scheduler.pendingTimeouts());
+    }
+
+    @Test
+    public void stoppedScheduler_rejectsDelays() {
+        scheduler.dispose();
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(10), scheduler))
+                .expectError()
+                .verify(Duration.ofSeconds(5));
+        assertTrue(scheduler.isDisposed());
+        assertFalse(Schedulers.parallel().isDisposed());     //the dispatcher is not disposed with the wheel
+    }
+}
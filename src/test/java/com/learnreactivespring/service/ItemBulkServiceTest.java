@@ -0,0 +1,65 @@
+package com.learnreactivespring.service;
+
+import com.learnreactivespring.cache.ItemCache;
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.repository.ItemReactiveRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemBulkServiceTest {
+
+    ItemReactiveRepository itemReactiveRepository;
+
+    ItemBulkService itemBulkService;
+
+    @BeforeEach
+    public void setUp() {
+        itemReactiveRepository = mock(ItemReactiveRepository.class);
+        itemBulkService = new ItemBulkService();
+        itemBulkService.itemReactiveRepository = itemReactiveRepository;
+        itemBulkService.itemCache = new ItemCache(itemReactiveRepository, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        itemBulkService.defaultBatchSize = 10;
+        itemBulkService.maxBatchSize = 100;
+        itemBulkService.maxInFlightBatches = 2;
+    }
+
+    @Test
+    public void insertInBatches_failedBatchInvalidatesTheStoredIds() {
+        Item stored = new Item("ABC", "Samsung TV", 399.99);
+        when(itemReactiveRepository.findById("ABC")).thenReturn(Mono.empty(), Mono.just(stored));
+        StepVerifier.create(itemBulkService.itemCache.findById("ABC")).verifyComplete();     //cached "not found"
+
+        //ABC is stored, DEF is a duplicate
+        MongoBulkWriteException duplicate = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList()),
+                Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress());
+        when(itemReactiveRepository.insert(ArgumentMatchers.<Iterable<Item>>any())).thenReturn(Flux.error(duplicate));
+
+        StepVerifier.create(itemBulkService.insertInBatches(Flux.just(stored, new Item("DEF", "LG TV", 420.0)), null))
+                .expectNextMatches(result -> result.getInserted() == 1 && result.getError() != null)
+                .verifyComplete();
+
+        StepVerifier.create(itemBulkService.itemCache.findById("ABC"))
+                .expectNext(stored)
+                .verifyComplete();
+        verify(itemReactiveRepository, times(2)).findById("ABC");
+    }
+}
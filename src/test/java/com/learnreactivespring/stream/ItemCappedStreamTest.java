@@ -0,0 +1,268 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.document.ItemCapped;
+import com.learnreactivespring.model.ItemStreamFilter;
+import com.learnreactivespring.repository.ItemReactiveCappedRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemCappedStreamTest {
+
+    DirectProcessor<ItemCapped> cursor;
+
+    AtomicInteger openCursors = new AtomicInteger();
+
+    ItemReactiveCappedRepository itemReactiveCappedRepository;
+
+    @BeforeEach
+    public void setUp() {
+        cursor = DirectProcessor.create();
+        itemReactiveCappedRepository = mock(ItemReactiveCappedRepository.class);
+        when(itemReactiveCappedRepository.findItemsBy()).thenReturn(cursor
+                .doOnSubscribe(subscription -> openCursors.incrementAndGet())
+                .doOnCancel(openCursors::decrementAndGet));
+    }
+
+    @Test
+    public void sharedStream_oneCursorForAllSubscribers() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+
+        Disposable first = itemCappedStream.stream().subscribe();
+        Disposable second = itemCappedStream.stream().subscribe();
+        assertEquals(1, openCursors.get());
+        assertEquals(2, itemCappedStream.subscribers());
+
+        first.dispose();
+        assertEquals(1, openCursors.get());
+        second.dispose();
+        assertEquals(0, openCursors.get());     //closed with the last subscriber
+        assertEquals(0, itemCappedStream.subscribers());
+    }
+
+    @Test
+    public void sharedStream_everySubscriberGetsEveryItem() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+
+        StepVerifier first = StepVerifier.create(itemCappedStream.stream().take(2))
+                .expectNextCount(2)
+                .expectComplete()
+                .verifyLater();
+        StepVerifier second = StepVerifier.create(itemCappedStream.stream().take(2))
+                .expectNextCount(2)
+                .expectComplete()
+                .verifyLater();
+
+        cursor.onNext(new ItemCapped(null, "Random item 1", 101.0));
+        cursor.onNext(new ItemCapped(null, "Random item 2", 102.0));
+
+        first.verify(Duration.ofSeconds(5));
+        second.verify(Duration.ofSeconds(5));
+    }
+
+    /**
+     * The slow subscriber does not request anything while the items are published. It overflows its own buffer
+     * and gets the buffered items and then the overflow error, while the other subscriber stays connected.
+     */
+    @Test
+    public void sharedStream_slowSubscriberIsDisconnected() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(8), true, "buffer", 100);
+        Disposable fast = itemCappedStream.stream().subscribe();
+
+        StepVerifier.create(itemCappedStream.stream(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        cursor.onNext(new ItemCapped(null, "Random item " + i, 100.0 + i));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(itemCapped -> true)
+                .expectError()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, openCursors.get());
+        assertEquals(1, itemCappedStream.subscribers());
+        fast.dispose();
+    }
+
+    /**
+     * Same slow consumer handling as in shared mode, the stalled subscriber overflows its buffer
+     */
+    @Test
+    public void dedicatedStream_slowSubscriberIsDisconnected() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(8), false, "buffer", 100);
+
+        StepVerifier.create(itemCappedStream.stream(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        cursor.onNext(new ItemCapped(null, "Random item " + i, 100.0 + i));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(itemCapped -> true)
+                .expectError()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0, openCursors.get());
+    }
+
+    @Test
+    public void dedicatedStream_latestPolicy() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(8), false, "buffer", 100);
+
+        StepVerifier.create(itemCappedStream.stream(ItemStreamFilter.NONE, SlowConsumerPolicy.LATEST), 0)
+                .then(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        cursor.onNext(new ItemCapped(null, "Random item " + i, 100.0 + i));
+                    }
+                })
+                .thenRequest(1)
+                .expectNextMatches(itemCapped -> itemCapped.getPrice() == 119.0)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void dedicatedStream_oneCursorPerSubscriber() {
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), false, "buffer", 100);
+
+        Disposable first = itemCappedStream.stream().subscribe();
+        Disposable second = itemCappedStream.stream().subscribe();
+        assertEquals(2, openCursors.get());
+        assertEquals(2, itemCappedStream.subscribers());
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, itemCappedStream.subscribers());
+    }
+
+    /**
+     * The missed documents come from a query, the shared cursor replays one of them again which is skipped
+     */
+    @Test
+    public void sharedStream_resumeAfterLastEventId() {
+        ItemCapped first = new ItemCapped(new ObjectId().toHexString(), "Random item 1", 101.0);
+        ItemCapped second = new ItemCapped(new ObjectId().toHexString(), "Random item 2", 102.0);
+        ItemCapped third = new ItemCapped(new ObjectId().toHexString(), "Random item 3", 103.0);
+        when(itemReactiveCappedRepository.findByIdGreaterThan(first.getId())).thenReturn(Flux.just(second));
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+
+        StepVerifier.create(itemCappedStream.resumeAfter(first.getId()).take(2))
+                .then(() -> {
+                    cursor.onNext(first);
+                    cursor.onNext(second);
+                    cursor.onNext(third);
+                })
+                .expectNext(second, third)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0, openCursors.get());
+    }
+
+    /**
+     * After the overlap every live document goes through, also one of another process with a smaller ObjectId
+     */
+    @Test
+    public void sharedStream_resumeDropsOnlyTheOverlap() {
+        ItemCapped first = new ItemCapped(new ObjectId().toHexString(), "Random item 1", 101.0);
+        ItemCapped second = new ItemCapped(new ObjectId().toHexString(), "Random item 2", 102.0);
+        ItemCapped third = new ItemCapped(new ObjectId().toHexString(), "Random item 3", 103.0);
+        ItemCapped otherProcess = new ItemCapped(new ObjectId(new Date(System.currentTimeMillis() - 60_000)).toHexString(),
+                "Random item 4", 104.0);
+        when(itemReactiveCappedRepository.findByIdGreaterThan(first.getId())).thenReturn(Flux.just(second));
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+
+        StepVerifier.create(itemCappedStream.resumeAfter(first.getId()).take(3))
+                .then(() -> {
+                    cursor.onNext(second);
+                    cursor.onNext(third);
+                    cursor.onNext(otherProcess);
+                })
+                .expectNext(second, third, otherProcess)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void sharedStream_oneCursorPerFilter() {
+        when(itemReactiveCappedRepository.tailItems(any(ItemStreamFilter.class), isNull())).thenAnswer(invocation -> cursor
+                .doOnSubscribe(subscription -> openCursors.incrementAndGet())
+                .doOnCancel(openCursors::decrementAndGet));
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+
+        Disposable first = itemCappedStream.stream(new ItemStreamFilter(100.0, null, null)).subscribe();
+        Disposable second = itemCappedStream.stream(new ItemStreamFilter(100.0, null, null)).subscribe();
+        Disposable other = itemCappedStream.stream(new ItemStreamFilter(null, null, "Random")).subscribe();
+        assertEquals(2, openCursors.get());
+
+        first.dispose();
+        second.dispose();
+        other.dispose();
+        assertEquals(0, openCursors.get());
+    }
+
+    /**
+     * A subscriber that got the cursor of a filter just before it was closed opens it again. When it leaves,
+     * the newer cursor of the same filter stays in the map and is shared.
+     */
+    @Test
+    public void sharedStream_lateSubscriberDoesNotEvictTheNewerCursor() {
+        when(itemReactiveCappedRepository.tailItems(any(ItemStreamFilter.class), isNull())).thenAnswer(invocation -> cursor
+                .doOnSubscribe(subscription -> openCursors.incrementAndGet())
+                .doOnCancel(openCursors::decrementAndGet));
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 100);
+        ItemStreamFilter filter = new ItemStreamFilter(100.0, null, null);
+
+        Flux<ItemCapped> closing = itemCappedStream.stream(filter);
+        itemCappedStream.stream(filter).subscribe().dispose();
+        Disposable late = closing.subscribe();      //opens the closed cursor again
+        Disposable current = itemCappedStream.stream(filter).subscribe();
+        assertEquals(2, openCursors.get());
+
+        late.dispose();
+        Disposable next = itemCappedStream.stream(filter).subscribe();
+        assertEquals(1, openCursors.get());     //shares the current cursor
+
+        current.dispose();
+        next.dispose();
+        assertEquals(0, openCursors.get());
+    }
+
+    /**
+     * Beyond items.stream.max-filtered-cursors a filter is applied in memory on the shared cursor
+     */
+    @Test
+    public void sharedStream_filtersBeyondTheLimitAreAppliedInMemory() {
+        when(itemReactiveCappedRepository.tailItems(any(ItemStreamFilter.class), isNull())).thenAnswer(invocation -> cursor
+                .doOnSubscribe(subscription -> openCursors.incrementAndGet())
+                .doOnCancel(openCursors::decrementAndGet));
+        ItemCappedStream itemCappedStream = new ItemCappedStream(itemReactiveCappedRepository, new StreamBackpressure(16), true, "buffer", 1);
+        Disposable first = itemCappedStream.stream(new ItemStreamFilter(null, null, "Random")).subscribe();
+
+        StepVerifier.create(itemCappedStream.stream(new ItemStreamFilter(100.0, null, null)).take(1))
+                .then(() -> {
+                    assertEquals(1, itemCappedStream.filteredCursors());
+                    cursor.onNext(new ItemCapped(null, "Random item 1", 50.0));
+                    cursor.onNext(new ItemCapped(null, "Random item 2", 150.0));
+                })
+                .expectNextMatches(itemCapped -> itemCapped.getPrice() == 150.0)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        first.dispose();
+        assertEquals(0, openCursors.get());
+    }
+}
@@ -0,0 +1,83 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.model.ItemChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemChangeDemultiplexerTest {
+
+    DirectProcessor<ItemChangeEvent> changeStream;
+
+    AtomicInteger openChangeStreams = new AtomicInteger();
+
+    ItemChangeDemultiplexer itemChangeDemultiplexer;
+
+    @BeforeEach
+    public void setUp() {
+        changeStream = DirectProcessor.create();
+        ItemChangeStream itemChangeStream = mock(ItemChangeStream.class);
+        when(itemChangeStream.changes(isNull())).thenReturn(changeStream
+                .doOnSubscribe(subscription -> openChangeStreams.incrementAndGet())
+                .doOnCancel(openChangeStreams::decrementAndGet));
+        itemChangeDemultiplexer = new ItemChangeDemultiplexer(itemChangeStream, new StreamBackpressure(16), "buffer");
+    }
+
+    private static ItemChangeEvent change(String type, String id) {
+        return new ItemChangeEvent(type, id, null, type + id);
+    }
+
+    @Test
+    public void oneChangeStreamForAllTheWatchedItems() {
+        Disposable first = itemChangeDemultiplexer.watch("a", null).subscribe();
+        Disposable second = itemChangeDemultiplexer.watch("a", null).subscribe();
+        Disposable third = itemChangeDemultiplexer.watch("b", null).subscribe();
+        assertEquals(1, openChangeStreams.get());
+        assertEquals(2, itemChangeDemultiplexer.keys());
+        assertEquals(3, itemChangeDemultiplexer.subscribers());
+        assertEquals(2, itemChangeDemultiplexer.maxSubscribersPerKey());
+
+        first.dispose();
+        third.dispose();
+        assertEquals(1, openChangeStreams.get());
+        assertEquals(1, itemChangeDemultiplexer.keys());
+
+        second.dispose();
+        assertEquals(0, openChangeStreams.get());
+        assertEquals(0, itemChangeDemultiplexer.keys());
+    }
+
+    @Test
+    public void watch_getsOnlyTheChangesOfItsItem() {
+        StepVerifier.create(itemChangeDemultiplexer.watch("a", null))
+                .then(() -> {
+                    changeStream.onNext(change("insert", "a"));
+                    changeStream.onNext(change("insert", "b"));
+                    changeStream.onNext(change("delete", "a"));
+                })
+                .expectNextMatches(change -> change.getType().equals("insert") && change.getId().equals("a"))
+                .expectNextMatches(change -> change.getType().equals("delete") && change.getId().equals("a"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void changeStreamError_endsAllTheWatches() {
+        StepVerifier.create(itemChangeDemultiplexer.watch("a", null))
+                .then(() -> changeStream.onError(new IllegalStateException("not a replica set")))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, itemChangeDemultiplexer.keys());
+    }
+}
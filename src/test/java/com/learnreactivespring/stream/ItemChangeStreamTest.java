@@ -0,0 +1,95 @@
+package com.learnreactivespring.stream;
+
+import com.learnreactivespring.document.Item;
+import com.learnreactivespring.model.ItemChangeEvent;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemChangeStreamTest {
+
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+
+    BsonDocument resumeToken = new BsonDocument("_data", new BsonString("825E1C9A2B000000012B022C0100296E5A1004"));
+
+    private ChangeStreamEvent<Item> event(OperationType operationType, ObjectId id, Document fullDocument) {
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(resumeToken, new MongoNamespace("items.item"),
+                fullDocument, new BsonDocument("_id", new BsonObjectId(id)), null, operationType, null);
+        return new ChangeStreamEvent<>(raw, Item.class, converter);
+    }
+
+    @Test
+    public void insertEvent() {
+        ObjectId id = new ObjectId();
+        Document fullDocument = new Document("_id", id).append("description", "Samsung TV").append("price", 399.99);
+
+        ItemChangeEvent change = ItemChangeStream.toChangeEvent(event(OperationType.INSERT, id, fullDocument));
+
+        assertEquals("insert", change.getType());
+        assertEquals(id.toHexString(), change.getId());
+        assertEquals(399.99, change.getItem().getPrice());
+        assertEquals(resumeToken, ItemChangeStream.decodeResumeToken(change.getResumeToken()));
+    }
+
+    @Test
+    public void deleteEvent() {
+        ObjectId id = new ObjectId();
+
+        ItemChangeEvent change = ItemChangeStream.toChangeEvent(event(OperationType.DELETE, id, null));
+
+        assertEquals("delete", change.getType());
+        assertEquals(id.toHexString(), change.getId());
+        assertNull(change.getItem());
+        assertEquals(change.getResumeToken(), ItemChangeStream.toEvent(change).id());
+    }
+
+    @Test
+    public void invalidResumeToken() {
+        assertThrows(ResponseStatusException.class, () -> ItemChangeStream.decodeResumeToken("not a token"));
+        assertThrows(ResponseStatusException.class, () -> ItemChangeStream.decodeResumeToken("bm90IGpzb24"));
+        assertThrows(ResponseStatusException.class, () -> ItemChangeStream.decodeResumeToken("e30"));   //{}
+    }
+
+    @Test
+    public void resumeTokenNotInTheOplog() {
+        ReactiveMongoOperations mongoOperations = mock(ReactiveMongoOperations.class);
+        when(mongoOperations.getCollectionName(Item.class)).thenReturn("item");
+        MongoCommandException historyLost = new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(286))
+                .append("errmsg", new BsonString("Resume of change stream was not possible")), new ServerAddress());
+        when(mongoOperations.changeStream(eq("item"), any(ChangeStreamOptions.class), eq(Item.class)))
+                .thenReturn(Flux.error(historyLost));
+
+        StepVerifier.create(new ItemChangeStream(mongoOperations).changes(ItemChangeStream.encodeResumeToken(resumeToken)))
+                .expectErrorMatches(ex -> ex instanceof ResponseStatusException
+                        && ((ResponseStatusException) ex).getStatus() == HttpStatus.GONE)
+                .verify();
+    }
+}
@@ -0,0 +1,103 @@
+package com.learnreactivespring.stream;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.DirectProcessor;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamBackpressureTest {
+
+    StreamBackpressure streamBackpressure = new StreamBackpressure(4);
+
+    DirectProcessor<String> source = DirectProcessor.create();
+
+    @Test
+    public void latest_keepsOnlyTheLastPendingElement() {
+        StepVerifier.create(streamBackpressure.apply(source, SlowConsumerPolicy.LATEST, Function.identity()), 0)
+                .then(() -> {
+                    source.onNext("a");
+                    source.onNext("b");
+                    source.onNext("c");
+                })
+                .thenRequest(1)
+                .expectNext("c")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2, streamBackpressure.dropped());
+    }
+
+    @Test
+    public void dropOldest_keepsTheLastBufferSizeElements() {
+        StepVerifier.create(streamBackpressure.apply(source, SlowConsumerPolicy.DROP_OLDEST, Function.identity()), 0)
+                .then(() -> {
+                    for (int i = 0; i < 6; i++) {
+                        source.onNext("item " + i);
+                    }
+                })
+                .thenRequest(4)
+                .expectNext("item 2", "item 3", "item 4", "item 5")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2, streamBackpressure.dropped());
+    }
+
+    /**
+     * Elements are keyed by their first letter, a newer version replaces the pending one in its place
+     */
+    @Test
+    public void conflate_keepsTheLatestVersionOfEveryKey() {
+        Function<String, Character> key = element -> element.charAt(0);
+        StepVerifier.create(streamBackpressure.apply(source, SlowConsumerPolicy.CONFLATE, key), 0)
+                .then(() -> {
+                    source.onNext("a1");
+                    source.onNext("b1");
+                    source.onNext("a2");
+                    source.onNext("a3");
+                })
+                .thenRequest(2)
+                .expectNext("a3", "b1")
+                .then(() -> source.onNext("c1"))
+                .thenRequest(1)
+                .expectNext("c1")
+                .then(source::onComplete)
+                .verifyComplete();
+
+        assertEquals(2, streamBackpressure.conflated());
+    }
+
+    @Test
+    public void buffer_disconnectsWhenFull() {
+        StepVerifier.create(streamBackpressure.apply(source, SlowConsumerPolicy.BUFFER, Function.identity()), 0)
+                .then(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        source.onNext("item " + i);
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(element -> true)
+                .expectError()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, streamBackpressure.dropped());
+    }
+
+    @Test
+    public void fastSubscriber_nothingDropped() {
+        StepVerifier.create(streamBackpressure.apply(source, SlowConsumerPolicy.LATEST, Function.identity()))
+                .then(() -> {
+                    source.onNext("a");
+                    source.onNext("b");
+                })
+                .expectNext("a", "b")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, streamBackpressure.dropped());
+    }
+}
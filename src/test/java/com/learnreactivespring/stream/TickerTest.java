@@ -0,0 +1,84 @@
+package com.learnreactivespring.stream;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TickerTest {
+
+    VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    List<Long> first = new CopyOnWriteArrayList<>();
+
+    List<Long> second = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void shared_lateSubscriberGetsTheLatestTickFirst() {
+        Ticker ticker = new Ticker(Duration.ofSeconds(1), true, scheduler);
+
+        Disposable firstSubscriber = ticker.ticks().subscribe(first::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+        Disposable secondSubscriber = ticker.ticks().subscribe(second::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), first);
+        assertEquals(Arrays.asList(2L, 3L), second);
+        assertEquals(2, ticker.subscribers());
+
+        firstSubscriber.dispose();
+        secondSubscriber.dispose();
+        assertEquals(0, ticker.subscribers());
+    }
+
+    @Test
+    public void shared_subscriberJoiningDuringAPublishGetsTheTickOnce() {
+        Ticker ticker = new Ticker(Duration.ofSeconds(1), true, scheduler);
+
+        ticker.ticks().subscribe(tick -> {
+            first.add(tick);
+            if (tick == 1L) {
+                ticker.ticks().subscribe(second::add);
+            }
+        });
+        ticker.ticks().subscribe();     //the publish iterator reads one subscriber ahead, the new one comes after it
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+
+        assertEquals(Arrays.asList(0L, 1L, 2L), first);
+        assertEquals(Arrays.asList(1L, 2L), second);
+    }
+
+    @Test
+    public void shared_stoppedWithTheLastSubscriber() {
+        Ticker ticker = new Ticker(Duration.ofSeconds(1), true, scheduler);
+
+        ticker.ticks().subscribe(first::add).dispose();
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+        assertTrue(first.isEmpty());
+
+        ticker.ticks().subscribe(second::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+        assertEquals(Collections.singletonList(0L), second);
+    }
+
+    @Test
+    public void perSubscriber_everySubscriberStartsAtZero() {
+        Ticker ticker = new Ticker(Duration.ofSeconds(1), false, scheduler);
+
+        ticker.ticks().subscribe(first::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+        ticker.ticks().subscribe(second::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertEquals(4, first.size());
+        assertEquals(Collections.singletonList(0L), second);
+    }
+}